@@ -0,0 +1,45 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.List;
+import java.util.Map;
+
+public class BenchmarkDocument extends Document {
+
+	private String name;
+	private long score;
+	private List<String> tags;
+	private Map<String, Integer> counters;
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public long getScore() {
+		return score;
+	}
+
+	public void setScore(long score) {
+		this.score = score;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public void setTags(List<String> tags) {
+		this.tags = tags;
+	}
+
+	public Map<String, Integer> getCounters() {
+		return counters;
+	}
+
+	public void setCounters(Map<String, Integer> counters) {
+		this.counters = counters;
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+
+	private static final int KEYS = 1024;
+
+	private final Map<Location, Integer> locations = new HashMap<>();
+	private String[] keys;
+	private Location[] built;
+	private int next;
+
+	@Setup
+	public void setup() {
+		keys = new String[KEYS];
+		built = new Location[KEYS];
+		for (int index = 0; index < KEYS; index++) {
+			keys[index] = "key-" + index;
+			built[index] = location(keys[index]);
+			locations.put(built[index], index);
+		}
+	}
+
+	@Benchmark
+	public Location build() {
+		return location(nextKey());
+	}
+
+	@Benchmark
+	public int hash() {
+		return built[nextIndex()].hashCode();
+	}
+
+	@Benchmark
+	public Integer lookup() {
+		return locations.get(location(nextKey()));
+	}
+
+	private Location location(String key) {
+		return Location.builder().database("benchmark").table("documents").key(key).build();
+	}
+
+	private String nextKey() {
+		return keys[nextIndex()];
+	}
+
+	private int nextIndex() {
+		return next = (next + 1) & (KEYS - 1);
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.ulfric.dragoon.rethink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.rethinkdb.RethinkDB;
+import com.ulfric.dragoon.ObjectFactory;
+import com.ulfric.dragoon.reflect.Instances;
+import com.ulfric.dragoon.rethink.fake.FakeRethinkServer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+
+	private static final String DATABASE = "benchmark";
+	private static final String TABLE = "documents";
+	private static final int KEYS = 1024;
+
+	@Param({"memory", "rethinkdb"})
+	public String backendType;
+
+	@Param({"0", "500"})
+	public long latencyMicros; // rethinkdb only
+
+	private FakeRethinkServer server;
+	private PooledConnectionFactory pool;
+	private SchemaManager schema;
+	private StorageBackend backend;
+	private Store<BenchmarkDocument> store;
+	private Location[] locations;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		if (BackendType.parse(backendType) == BackendType.MEMORY) {
+			backend = new MemoryBackend();
+		} else {
+			server = FakeRethinkServer.builder()
+					.password("benchmark")
+					.latency(latencyMicros, TimeUnit.MICROSECONDS)
+					.build()
+					.start();
+
+			pool = PooledConnectionFactory.builder()
+					.connector(() -> RethinkDB.r.connection()
+							.hostname("127.0.0.1")
+							.port(server.getPort())
+							.user("admin", "benchmark")
+							.connect())
+					.maximumSize(Math.max(2, Runtime.getRuntime().availableProcessors()))
+					.build();
+			schema = new SchemaManager(RethinkDB.r, pool, null);
+			backend = new RethinkBackend(RethinkDB.r, pool, schema, new Gson(), null);
+		}
+
+		ObjectFactory factory = new ObjectFactory();
+		factory.bind(Gson.class).toLazy(ignore -> new Gson());
+		factory.bind(StorageBackend.class).toFunction(ignore -> backend);
+		factory.bind(Store.class).toFunction(ignore -> Instances.instance(Store.class, BenchmarkDocument.class,
+				Location.builder().database(DATABASE).table(TABLE).build(), StoreSettings.defaults()));
+
+		@SuppressWarnings("unchecked")
+		Store<BenchmarkDocument> requested = factory.request(Store.class);
+		store = requested;
+
+		locations = new Location[KEYS];
+		List<BenchmarkDocument> documents = new ArrayList<>(KEYS);
+		for (int index = 0; index < KEYS; index++) {
+			locations[index] = Location.builder().database(DATABASE).table(TABLE).key("key-" + index).build();
+
+			BenchmarkDocument document = new BenchmarkDocument();
+			document.setLocation(locations[index]);
+			document.setName("document " + index);
+			document.setScore(index);
+			documents.add(document);
+		}
+		store.insertAll(documents).join();
+
+		for (Location location : locations) {
+			store.get(location).join();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next = (next + 1) & (KEYS - 1);
+		}
+	}
+
+	@Benchmark
+	public BenchmarkDocument getHit(Cursor cursor) {
+		return store.get(locations[cursor.next()]).join().get();
+	}
+
+	@Benchmark
+	public BenchmarkDocument getMiss(Cursor cursor) {
+		Location location = locations[cursor.next()];
+		store.close(location);
+		return store.get(location).join().get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		store.close();
+		backend.close();
+
+		if (server != null) {
+			schema.close();
+			pool.close();
+			server.close();
+		}
+	}
+
+}
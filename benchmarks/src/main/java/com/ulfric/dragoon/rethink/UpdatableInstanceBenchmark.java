@@ -0,0 +1,68 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdatableInstanceBenchmark {
+
+	@Param({"0", "4"})
+	public int listeners;
+
+	@Param({"false", "true"})
+	public boolean coalesce;
+
+	private final AtomicLong notified = new AtomicLong();
+	private UpdatableInstance<BenchmarkDocument> instance;
+	private BenchmarkDocument[] values;
+	private int next;
+
+	@Setup
+	public void setup() {
+		instance = new UpdatableInstance<>(Runnable::run);
+		for (int listener = 0; listener < listeners; listener++) {
+			instance.addListener(value -> notified.incrementAndGet(), coalesce);
+		}
+
+		values = new BenchmarkDocument[2];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = new BenchmarkDocument();
+			values[index].setScore(index);
+		}
+		instance.update(values[0]);
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(3)
+	public BenchmarkDocument read() {
+		return instance.get();
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public void write() {
+		instance.update(values[next ^= 1]);
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.ulfric.dragoon.rethink.codec;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.rethinkdb.model.MapObject;
+import com.ulfric.dragoon.rethink.BenchmarkDocument;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	private DocumentCodec<BenchmarkDocument> codec;
+	private BenchmarkDocument document;
+	private Map<String, Object> encoded;
+
+	@Setup
+	public void setup() {
+		codec = new DocumentCodec<>(new Gson(), BenchmarkDocument.class);
+
+		Map<String, Integer> counters = new HashMap<>();
+		counters.put("logins", 42);
+		counters.put("purchases", 7);
+
+		document = new BenchmarkDocument();
+		document.setName("benchmark");
+		document.setScore(1337);
+		document.setTags(Arrays.asList("alpha", "beta", "gamma"));
+		document.setCounters(counters);
+
+		encoded = encode();
+	}
+
+	@Benchmark
+	public MapObject encode() {
+		return codec.encode(document, "key");
+	}
+
+	@Benchmark
+	public BenchmarkDocument decode() {
+		return codec.decode(encoded);
+	}
+
+}
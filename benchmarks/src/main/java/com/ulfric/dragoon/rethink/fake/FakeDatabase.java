@@ -0,0 +1,80 @@
+package com.ulfric.dragoon.rethink.fake;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class FakeDatabase {
+
+	private final Map<String, Map<String, Table>> databases = new ConcurrentHashMap<>();
+
+	public FakeDatabase() {
+		databases.put("test", new ConcurrentHashMap<>());
+	}
+
+	public void put(String database, String table, Map<String, Object> document) {
+		Objects.requireNonNull(document, "document");
+		Objects.requireNonNull(document.get("id"), "id");
+
+		databases.computeIfAbsent(database, ignore -> new ConcurrentHashMap<>())
+				.computeIfAbsent(table, ignore -> new Table())
+				.rows.put(document.get("id"), document);
+	}
+
+	public int size(String database, String table) {
+		Map<String, Table> tables = databases.get(database);
+		Table rows = tables == null ? null : tables.get(table);
+		return rows == null ? 0 : rows.rows.size();
+	}
+
+	List<String> databaseNames() {
+		return new ArrayList<>(databases.keySet());
+	}
+
+	boolean createDatabase(String database) {
+		return databases.putIfAbsent(database, new ConcurrentHashMap<>()) == null;
+	}
+
+	List<String> tableNames(String database) {
+		return new ArrayList<>(database(database).keySet());
+	}
+
+	boolean createTable(String database, String table) {
+		return database(database).putIfAbsent(table, new Table()) == null;
+	}
+
+	Table table(String database, String table) {
+		Table rows = database(database).get(table);
+		if (rows == null) {
+			throw new FakeQuery.QueryError(FakeQuery.OP_FAILED, "Table `" + database + '.' + table + "` does not exist.");
+		}
+		return rows;
+	}
+
+	private Map<String, Table> database(String database) {
+		Map<String, Table> tables = databases.get(database);
+		if (tables == null) {
+			throw new FakeQuery.QueryError(FakeQuery.OP_FAILED, "Database `" + database + "` does not exist.");
+		}
+		return tables;
+	}
+
+	static final class Table {
+		final ConcurrentSkipListMap<Object, Map<String, Object>> rows = new ConcurrentSkipListMap<>(FakeQuery::compare);
+		final Map<String, Index> indexes = new ConcurrentHashMap<>();
+	}
+
+	static final class Index {
+		final Object function;
+		final boolean multi;
+
+		Index(Object function, boolean multi) {
+			this.function = function;
+			this.multi = multi;
+		}
+	}
+
+}
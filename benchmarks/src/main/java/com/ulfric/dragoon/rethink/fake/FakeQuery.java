@@ -0,0 +1,915 @@
+package com.ulfric.dragoon.rethink.fake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+final class FakeQuery { // evaluates the subset of ReQL that Store and SchemaManager emit
+
+	static final int QUERY_LOGIC = 3000000;
+	static final int NON_EXISTENCE = 3100000;
+	static final int OP_FAILED = 4100000;
+	static final int USER = 5000000;
+
+	private static final int DATUM = 1;
+	private static final int MAKE_ARRAY = 2;
+	private static final int MAKE_OBJ = 3;
+	private static final int VAR = 10;
+	private static final int ERROR = 12;
+	private static final int DB = 14;
+	private static final int TABLE = 15;
+	private static final int GET = 16;
+	private static final int EQ = 17;
+	private static final int NE = 18;
+	private static final int LT = 19;
+	private static final int LE = 20;
+	private static final int GT = 21;
+	private static final int GE = 22;
+	private static final int NOT = 23;
+	private static final int ADD = 24;
+	private static final int SUB = 25;
+	private static final int APPEND = 29;
+	private static final int GET_FIELD = 31;
+	private static final int PLUCK = 33;
+	private static final int MERGE = 35;
+	private static final int FILTER = 39;
+	private static final int ORDER_BY = 41;
+	private static final int COUNT = 43;
+	private static final int UPDATE = 53;
+	private static final int DELETE = 54;
+	private static final int REPLACE = 55;
+	private static final int INSERT = 56;
+	private static final int DB_CREATE = 57;
+	private static final int DB_LIST = 59;
+	private static final int TABLE_CREATE = 60;
+	private static final int TABLE_LIST = 62;
+	private static final int BRANCH = 65;
+	private static final int FUNC = 69;
+	private static final int LIMIT = 71;
+	private static final int ASC = 73;
+	private static final int DESC = 74;
+	private static final int INDEX_CREATE = 75;
+	private static final int INDEX_LIST = 77;
+	private static final int GET_ALL = 78;
+	private static final int DEFAULT = 92;
+	private static final int CONTAINS = 93;
+	private static final int LITERAL = 137;
+	private static final int INDEX_WAIT = 140;
+	private static final int CHANGES = 152;
+	private static final int BRACKET = 170;
+	private static final int WAIT = 177;
+	private static final int MINVAL = 180;
+	private static final int MAXVAL = 181;
+	private static final int BETWEEN = 182;
+
+	private static final Object MIN = new Object();
+	private static final Object MAX = new Object();
+
+	private final FakeDatabase database;
+	private final Map<String, Object> options;
+	private final Map<Integer, Object> variables = new HashMap<>();
+
+	FakeQuery(FakeDatabase database, Map<String, Object> options) {
+		this.database = database;
+		this.options = options;
+	}
+
+	@SuppressWarnings("unchecked")
+	Object evaluate(Object node) {
+		if (node instanceof List) {
+			return term((List<Object>) node);
+		}
+
+		if (node instanceof Map) {
+			Map<String, Object> object = new LinkedHashMap<>();
+			((Map<String, Object>) node).forEach((key, value) -> object.put(key, evaluate(value)));
+			return object;
+		}
+
+		return node;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object term(List<Object> term) {
+		int type = ((Number) term.get(0)).intValue();
+		List<Object> args = term.size() > 1 ? (List<Object>) term.get(1) : Collections.emptyList();
+		Map<String, Object> optargs = term.size() > 2 ? (Map<String, Object>) term.get(2) : Collections.emptyMap();
+
+		switch (type) {
+			case DATUM:
+				return args.isEmpty() ? null : args.get(0);
+
+			case MAKE_ARRAY:
+				List<Object> array = new ArrayList<>(args.size());
+				args.forEach(arg -> array.add(evaluate(arg)));
+				return array;
+
+			case MAKE_OBJ:
+				return evaluate(optargs);
+
+			case VAR:
+				return variables.get(number(evaluate(args.get(0))).intValue());
+
+			case ERROR:
+				throw new QueryError(USER, String.valueOf(evaluate(args.get(0))));
+
+			case DB:
+				return new Db(string(evaluate(args.get(0))));
+
+			case TABLE:
+				return table(args);
+
+			case GET:
+				return new Selection(table(evaluate(args.get(0))), evaluate(args.get(1)));
+
+			case GET_ALL:
+				return getAll(table(evaluate(args.get(0))), args.subList(1, args.size()), optarg(optargs, "index"));
+
+			case BETWEEN:
+				return between(sequence(evaluate(args.get(0))), evaluate(args.get(1)), evaluate(args.get(2)),
+						optarg(optargs, "index"));
+
+			case MINVAL:
+				return MIN;
+
+			case MAXVAL:
+				return MAX;
+
+			case EQ:
+			case NE:
+			case LT:
+			case LE:
+			case GT:
+			case GE:
+				return comparison(type, evaluate(args.get(0)), evaluate(args.get(1)));
+
+			case NOT:
+				return !truthy(evaluate(args.get(0)));
+
+			case ADD:
+				return add(evaluate(args.get(0)), evaluate(args.get(1)));
+
+			case SUB:
+				return number(evaluate(args.get(0))).doubleValue() - number(evaluate(args.get(1))).doubleValue();
+
+			case APPEND:
+				List<Object> appended = new ArrayList<>((List<Object>) datum(evaluate(args.get(0))));
+				appended.add(datum(evaluate(args.get(1))));
+				return appended;
+
+			case CONTAINS:
+				Object haystack = datum(evaluate(args.get(0)));
+				Object needle = datum(evaluate(args.get(1)));
+				return haystack instanceof List && ((List<Object>) haystack).stream().anyMatch(value -> compare(value, needle) == 0);
+
+			case GET_FIELD:
+			case BRACKET:
+				return field(datum(evaluate(args.get(0))), string(evaluate(args.get(1))));
+
+			case DEFAULT:
+				try {
+					Object value = evaluate(args.get(0));
+					return value == null ? evaluate(args.get(1)) : value;
+				} catch (QueryError error) {
+					if (error.type != NON_EXISTENCE) {
+						throw error;
+					}
+					return evaluate(args.get(1));
+				}
+
+			case PLUCK:
+				return pluck(evaluate(args.get(0)), args.subList(1, args.size()));
+
+			case MERGE:
+				Object base = datum(evaluate(args.get(0)));
+				Object patch = evaluate(args.get(1));
+				return strip(merge(base, patch instanceof Func ? call((Func) patch, base) : patch));
+
+			case FILTER:
+				return filter(sequence(evaluate(args.get(0))), evaluate(args.get(1)));
+
+			case ORDER_BY:
+				return orderBy(evaluate(args.get(0)), args.subList(1, args.size()), optarg(optargs, "index"));
+
+			case COUNT:
+				return (double) sequence(evaluate(args.get(0))).rows.size();
+
+			case LIMIT:
+				Sequence limited = sequence(evaluate(args.get(0)));
+				int limit = number(evaluate(args.get(1))).intValue();
+				return new Sequence(new ArrayList<>(limited.rows.subList(0, Math.min(limit, limited.rows.size()))), limited.table);
+
+			case BRANCH:
+				return truthy(evaluate(args.get(0))) ? evaluate(args.get(1)) : evaluate(args.get(2));
+
+			case FUNC:
+				List<Object> parameters = (List<Object>) datum(evaluate(args.get(0)));
+				return new Func(parameters, args.get(1));
+
+			case ASC:
+				return new Order(string(evaluate(args.get(0))), false);
+
+			case DESC:
+				return new Order(string(evaluate(args.get(0))), true);
+
+			case LITERAL:
+				return new Literal(args.isEmpty() ? null : evaluate(args.get(0)), !args.isEmpty());
+
+			case UPDATE:
+			case DELETE:
+			case REPLACE:
+				return write(type, evaluate(args.get(0)), args.size() > 1 ? evaluate(args.get(1)) : null,
+						Boolean.TRUE.equals(optarg(optargs, "return_changes")));
+
+			case INSERT:
+				return insert(table(evaluate(args.get(0))), datum(evaluate(args.get(1))), optarg(optargs, "conflict"));
+
+			case DB_CREATE:
+				String created = string(evaluate(args.get(0)));
+				if (!database.createDatabase(created)) {
+					throw new QueryError(OP_FAILED, "Database `" + created + "` already exists.");
+				}
+				return counts("dbs_created", 1);
+
+			case DB_LIST:
+				return database.databaseNames();
+
+			case TABLE_CREATE:
+				String inDatabase = args.size() > 1 ? ((Db) evaluate(args.get(0))).name : defaultDatabase();
+				String table = string(evaluate(args.get(args.size() - 1)));
+				if (!database.createTable(inDatabase, table)) {
+					throw new QueryError(OP_FAILED, "Table `" + inDatabase + '.' + table + "` already exists.");
+				}
+				return counts("tables_created", 1);
+
+			case TABLE_LIST:
+				return database.tableNames(args.isEmpty() ? defaultDatabase() : ((Db) evaluate(args.get(0))).name);
+
+			case INDEX_CREATE:
+				TableRef indexed = table(evaluate(args.get(0)));
+				String index = string(evaluate(args.get(1)));
+				Object function = args.size() > 2 ? evaluate(args.get(2)) : null;
+				FakeDatabase.Index previous = indexed.table.indexes.putIfAbsent(index,
+						new FakeDatabase.Index(function, Boolean.TRUE.equals(optarg(optargs, "multi"))));
+				if (previous != null) {
+					throw new QueryError(OP_FAILED, "Index `" + index + "` already exists on table `" + indexed.name + "`.");
+				}
+				return counts("created", 1);
+
+			case INDEX_LIST:
+				return new ArrayList<>(table(evaluate(args.get(0))).table.indexes.keySet());
+
+			case INDEX_WAIT:
+				TableRef waited = table(evaluate(args.get(0)));
+				List<Object> statuses = new ArrayList<>();
+				for (String name : waited.table.indexes.keySet()) {
+					Map<String, Object> status = new LinkedHashMap<>();
+					status.put("index", name);
+					status.put("ready", true);
+					statuses.add(status);
+				}
+				return statuses;
+
+			case WAIT:
+				return counts("ready", 1);
+
+			case CHANGES:
+				throw new QueryError(QUERY_LOGIC, "The fake server does not support changefeeds");
+
+			default:
+				throw new QueryError(QUERY_LOGIC, "The fake server does not support term " + type);
+		}
+	}
+
+	private Object optarg(Map<String, Object> optargs, String name) {
+		Object value = optargs.get(name);
+		return value == null ? null : evaluate(value);
+	}
+
+	private String defaultDatabase() {
+		Object db = options.get("db");
+		return db == null ? "test" : ((Db) evaluate(db)).name;
+	}
+
+	private TableRef table(List<Object> args) {
+		String inDatabase = args.size() > 1 ? ((Db) evaluate(args.get(0))).name : defaultDatabase();
+		String name = string(evaluate(args.get(args.size() - 1)));
+		return new TableRef(name, database.table(inDatabase, name));
+	}
+
+	private TableRef table(Object value) {
+		if (value instanceof TableRef) {
+			return (TableRef) value;
+		}
+		throw new QueryError(QUERY_LOGIC, "Expected a table but found " + value);
+	}
+
+	private Sequence sequence(Object value) {
+		if (value instanceof Sequence) {
+			return (Sequence) value;
+		}
+
+		if (value instanceof TableRef) {
+			FakeDatabase.Table table = ((TableRef) value).table;
+			return new Sequence(new ArrayList<>(table.rows.values()), table);
+		}
+
+		if (value instanceof List) {
+			return new Sequence(new ArrayList<>(castList(value)), null);
+		}
+
+		throw new QueryError(QUERY_LOGIC, "Expected a sequence but found " + value);
+	}
+
+	private Sequence getAll(TableRef table, List<Object> keys, Object index) {
+		List<Object> values = new ArrayList<>(keys.size());
+		keys.forEach(key -> values.add(datum(evaluate(key))));
+
+		List<Object> rows = new ArrayList<>();
+		if (index == null || "id".equals(index)) {
+			for (Object key : values) {
+				Map<String, Object> row = table.table.rows.get(key);
+				if (row != null) {
+					rows.add(row);
+				}
+			}
+		} else {
+			for (Object key : values) {
+				for (Map<String, Object> row : table.table.rows.values()) {
+					if (indexValues(table.table, (String) index, row).stream().anyMatch(value -> compare(value, key) == 0)) {
+						rows.add(row);
+					}
+				}
+			}
+		}
+		return new Sequence(rows, table.table);
+	}
+
+	private Sequence between(Sequence source, Object lower, Object upper, Object index) {
+		List<Object> rows = new ArrayList<>();
+		for (Object row : source.rows) {
+			List<Object> keys = index == null || "id".equals(index)
+					? Collections.singletonList(field(row, "id"))
+					: indexValues(source.table, (String) index, castMap(row));
+
+			if (keys.stream().anyMatch(key -> compare(key, lower) >= 0 && compare(key, upper) < 0)) {
+				rows.add(row);
+			}
+		}
+		return new Sequence(rows, source.table);
+	}
+
+	private List<Object> indexValues(FakeDatabase.Table table, String name, Map<String, Object> row) {
+		FakeDatabase.Index index = table == null ? null : table.indexes.get(name);
+		if (index == null) {
+			throw new QueryError(OP_FAILED, "Index `" + name + "` was not found.");
+		}
+
+		Object value;
+		try {
+			value = index.function instanceof Func ? datum(call((Func) index.function, row)) : row.get(name);
+		} catch (QueryError missing) {
+			return Collections.emptyList();
+		}
+
+		if (value == null) {
+			return Collections.emptyList();
+		}
+
+		return index.multi && value instanceof List ? castList(value) : Collections.singletonList(value);
+	}
+
+	private Object pluck(Object source, List<Object> fields) {
+		List<String> names = new ArrayList<>(fields.size());
+		fields.forEach(field -> names.add(string(evaluate(field))));
+
+		if (source instanceof Map) {
+			return pluck(castMap(source), names);
+		}
+
+		Sequence sequence = sequence(source);
+		List<Object> rows = new ArrayList<>(sequence.rows.size());
+		sequence.rows.forEach(row -> rows.add(pluck(castMap(row), names)));
+		return new Sequence(rows, null);
+	}
+
+	private Map<String, Object> pluck(Map<String, Object> row, List<String> names) {
+		Map<String, Object> plucked = new LinkedHashMap<>();
+		for (String name : names) {
+			if (row.containsKey(name)) {
+				plucked.put(name, row.get(name));
+			}
+		}
+		return plucked;
+	}
+
+	private Sequence filter(Sequence source, Object predicate) {
+		List<Object> rows = new ArrayList<>();
+		for (Object row : source.rows) {
+			boolean matches;
+			if (predicate instanceof Func) {
+				try {
+					matches = truthy(call((Func) predicate, row));
+				} catch (QueryError error) {
+					if (error.type != NON_EXISTENCE) {
+						throw error;
+					}
+					matches = false;
+				}
+			} else {
+				matches = castMap(predicate).entrySet().stream()
+						.allMatch(entry -> compare(castMap(row).get(entry.getKey()), entry.getValue()) == 0);
+			}
+
+			if (matches) {
+				rows.add(row);
+			}
+		}
+		return new Sequence(rows, source.table);
+	}
+
+	private Sequence orderBy(Object source, List<Object> fields, Object index) {
+		Sequence sequence = sequence(source);
+
+		List<Order> orders = new ArrayList<>();
+		if (index instanceof Order) {
+			orders.add((Order) index);
+		} else if (index != null) {
+			orders.add(new Order(string(index), false));
+		}
+		fields.forEach(field -> {
+			Object order = evaluate(field);
+			orders.add(order instanceof Order ? (Order) order : new Order(string(order), false));
+		});
+
+		Comparator<Object> comparator = (left, right) -> 0;
+		for (Order order : orders) {
+			Comparator<Object> next = (left, right) -> compare(castMap(left).get(order.field), castMap(right).get(order.field));
+			comparator = comparator.thenComparing(order.descending ? next.reversed() : next);
+		}
+
+		List<Object> rows = new ArrayList<>(sequence.rows);
+		rows.sort(comparator);
+		return new Sequence(rows, sequence.table);
+	}
+
+	private Map<String, Object> write(int type, Object target, Object change, boolean returnChanges) {
+		Map<String, Object> result = counts();
+		List<Object> changes = new ArrayList<>();
+
+		FakeDatabase.Table table;
+		List<Object> keys = new ArrayList<>();
+		if (target instanceof Selection) {
+			table = ((Selection) target).table.table;
+			keys.add(((Selection) target).key);
+		} else {
+			Sequence sequence = sequence(target);
+			table = sequence.table;
+			if (table == null) {
+				throw new QueryError(QUERY_LOGIC, "Expected a table selection");
+			}
+			sequence.rows.forEach(row -> keys.add(field(row, "id")));
+		}
+
+		for (Object key : keys) {
+			synchronized (table) {
+				Map<String, Object> old = table.rows.get(key);
+				try {
+					Map<String, Object> updated = changed(type, old, change);
+
+					if (updated == null) {
+						if (old == null) {
+							increment(result, "skipped");
+							continue;
+						}
+						table.rows.remove(key);
+						increment(result, "deleted");
+					} else if (old == null) {
+						if (type == UPDATE) {
+							increment(result, "skipped");
+							continue;
+						}
+						table.rows.put(key, updated);
+						increment(result, "inserted");
+					} else if (compare(old, updated) == 0) {
+						increment(result, "unchanged");
+					} else {
+						table.rows.put(key, updated);
+						increment(result, "replaced");
+					}
+
+					if (returnChanges) {
+						Map<String, Object> entry = new LinkedHashMap<>();
+						entry.put("new_val", updated);
+						entry.put("old_val", old);
+						changes.add(entry);
+					}
+				} catch (QueryError error) {
+					increment(result, "errors");
+					result.putIfAbsent("first_error", error.getMessage());
+				}
+			}
+		}
+
+		if (returnChanges) {
+			result.put("changes", changes);
+		}
+		return result;
+	}
+
+	private Map<String, Object> changed(int type, Map<String, Object> old, Object change) {
+		if (type == DELETE) {
+			return null;
+		}
+
+		Object value = change instanceof Func ? (old == null && type == UPDATE ? null : call((Func) change, old)) : change;
+
+		if (type == UPDATE) {
+			return old == null ? null : castMap(strip(merge(old, value)));
+		}
+
+		return value == null ? null : castMap(strip(value));
+	}
+
+	private Map<String, Object> insert(TableRef table, Object documents, Object conflict) {
+		Map<String, Object> result = counts();
+		List<Object> generated = new ArrayList<>();
+
+		for (Object document : documents instanceof List ? castList(documents) : Collections.singletonList(documents)) {
+			Map<String, Object> row = new LinkedHashMap<>(castMap(strip(document)));
+			if (row.get("id") == null) {
+				String id = UUID.randomUUID().toString();
+				row.put("id", id);
+				generated.add(id);
+			}
+
+			synchronized (table.table) {
+				Map<String, Object> old = table.table.rows.get(row.get("id"));
+				if (old == null) {
+					table.table.rows.put(row.get("id"), row);
+					increment(result, "inserted");
+				} else if ("replace".equals(conflict) || "update".equals(conflict)) {
+					Map<String, Object> updated = "update".equals(conflict) ? castMap(strip(merge(old, row))) : row;
+					if (compare(old, updated) == 0) {
+						increment(result, "unchanged");
+					} else {
+						table.table.rows.put(row.get("id"), updated);
+						increment(result, "replaced");
+					}
+				} else {
+					increment(result, "errors");
+					result.putIfAbsent("first_error", "Duplicate primary key `id`: " + row.get("id"));
+				}
+			}
+		}
+
+		if (!generated.isEmpty()) {
+			result.put("generated_keys", generated);
+		}
+		return result;
+	}
+
+	private Object call(Func function, Object argument) {
+		Integer parameter = number(function.parameters.get(0)).intValue();
+		Object previous = variables.put(parameter, argument);
+		try {
+			return evaluate(function.body);
+		} finally {
+			if (previous == null) {
+				variables.remove(parameter);
+			} else {
+				variables.put(parameter, previous);
+			}
+		}
+	}
+
+	private Object comparison(int type, Object left, Object right) {
+		int compared = compare(datum(left), datum(right));
+		switch (type) {
+			case EQ:
+				return compared == 0;
+			case NE:
+				return compared != 0;
+			case LT:
+				return compared < 0;
+			case LE:
+				return compared <= 0;
+			case GT:
+				return compared > 0;
+			default:
+				return compared >= 0;
+		}
+	}
+
+	private Object add(Object left, Object right) {
+		Object first = datum(left);
+		Object second = datum(right);
+
+		if (first instanceof Number && second instanceof Number) {
+			return ((Number) first).doubleValue() + ((Number) second).doubleValue();
+		}
+
+		if (first instanceof String && second instanceof String) {
+			return (String) first + second;
+		}
+
+		if (first instanceof List && second instanceof List) {
+			List<Object> joined = new ArrayList<>(castList(first));
+			joined.addAll(castList(second));
+			return joined;
+		}
+
+		throw new QueryError(QUERY_LOGIC, "Cannot add " + first + " and " + second);
+	}
+
+	private static Object field(Object value, String field) {
+		if (!(value instanceof Map)) {
+			throw new QueryError(QUERY_LOGIC, "Cannot read field `" + field + "` of " + value);
+		}
+
+		Map<String, Object> object = castMap(value);
+		if (!object.containsKey(field)) {
+			throw new QueryError(NON_EXISTENCE, "No attribute `" + field + "` in object");
+		}
+		return object.get(field);
+	}
+
+	private static Object merge(Object base, Object patch) {
+		if (!(patch instanceof Map) || !(base instanceof Map)) {
+			return patch;
+		}
+
+		Map<String, Object> merged = new LinkedHashMap<>(castMap(base));
+		castMap(patch).forEach((key, value) -> {
+			if (value instanceof Literal && !((Literal) value).present) {
+				merged.remove(key);
+			} else if (value instanceof Literal) {
+				merged.put(key, ((Literal) value).value);
+			} else {
+				merged.put(key, merge(merged.get(key), value));
+			}
+		});
+		return merged;
+	}
+
+	private static Object strip(Object value) {
+		if (value instanceof Literal) {
+			return strip(((Literal) value).value);
+		}
+
+		if (value instanceof Map) {
+			Map<String, Object> stripped = new LinkedHashMap<>();
+			castMap(value).forEach((key, nested) -> {
+				if (!(nested instanceof Literal) || ((Literal) nested).present) {
+					stripped.put(key, strip(nested));
+				}
+			});
+			return stripped;
+		}
+
+		if (value instanceof List) {
+			List<Object> stripped = new ArrayList<>();
+			castList(value).forEach(nested -> stripped.add(strip(nested)));
+			return stripped;
+		}
+
+		return value;
+	}
+
+	static Object datum(Object value) {
+		if (value instanceof Sequence) {
+			return ((Sequence) value).rows();
+		}
+
+		if (value instanceof TableRef) {
+			return new ArrayList<>(((TableRef) value).table.rows.values());
+		}
+
+		if (value instanceof Selection) {
+			Selection selection = (Selection) value;
+			return selection.table.table.rows.get(selection.key);
+		}
+
+		if (value instanceof Literal) {
+			return ((Literal) value).value;
+		}
+
+		return value;
+	}
+
+	static int compare(Object left, Object right) {
+		int rank = Integer.compare(rank(left), rank(right));
+		if (rank != 0 || left == null || left == MIN || left == MAX) {
+			return rank;
+		}
+
+		if (left instanceof Number) {
+			return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+		}
+
+		if (left instanceof String) {
+			return ((String) left).compareTo((String) right);
+		}
+
+		if (left instanceof Boolean) {
+			return Boolean.compare((Boolean) left, (Boolean) right);
+		}
+
+		if (left instanceof List) {
+			List<Object> first = castList(left);
+			List<Object> second = castList(right);
+			for (int index = 0; index < Math.min(first.size(), second.size()); index++) {
+				int compared = compare(first.get(index), second.get(index));
+				if (compared != 0) {
+					return compared;
+				}
+			}
+			return Integer.compare(first.size(), second.size());
+		}
+
+		if (left instanceof Map) {
+			Map<String, Object> first = castMap(left);
+			Map<String, Object> second = castMap(right);
+			if (!first.keySet().equals(second.keySet())) {
+				return first.keySet().toString().compareTo(second.keySet().toString()) < 0 ? -1 : 1;
+			}
+			for (Map.Entry<String, Object> entry : first.entrySet()) {
+				int compared = compare(entry.getValue(), second.get(entry.getKey()));
+				if (compared != 0) {
+					return compared;
+				}
+			}
+			return 0;
+		}
+
+		return String.valueOf(left).compareTo(String.valueOf(right));
+	}
+
+	private static int rank(Object value) { // minval, arrays, booleans, null, numbers, objects, strings, maxval
+		if (value == MIN) {
+			return 0;
+		}
+		if (value instanceof List) {
+			return 1;
+		}
+		if (value instanceof Boolean) {
+			return 2;
+		}
+		if (value == null) {
+			return 3;
+		}
+		if (value instanceof Number) {
+			return 4;
+		}
+		if (value instanceof Map) {
+			return 5;
+		}
+		if (value == MAX) {
+			return 7;
+		}
+		return 6;
+	}
+
+	private static boolean truthy(Object value) {
+		Object datum = datum(value);
+		return datum != null && !Boolean.FALSE.equals(datum);
+	}
+
+	private static Number number(Object value) {
+		if (value instanceof Number) {
+			return (Number) value;
+		}
+		throw new QueryError(QUERY_LOGIC, "Expected a number but found " + value);
+	}
+
+	private static String string(Object value) {
+		if (value instanceof String) {
+			return (String) value;
+		}
+		throw new QueryError(QUERY_LOGIC, "Expected a string but found " + value);
+	}
+
+	private static Map<String, Object> counts(String name, int value) {
+		Map<String, Object> counts = new LinkedHashMap<>();
+		counts.put(name, value);
+		return counts;
+	}
+
+	private static Map<String, Object> counts() {
+		Map<String, Object> counts = new LinkedHashMap<>();
+		for (String name : new String[] { "deleted", "errors", "inserted", "replaced", "skipped", "unchanged" }) {
+			counts.put(name, 0);
+		}
+		return counts;
+	}
+
+	private static void increment(Map<String, Object> counts, String name) {
+		counts.put(name, ((Number) counts.get(name)).intValue() + 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> castMap(Object value) {
+		if (value instanceof Map) {
+			return (Map<String, Object>) value;
+		}
+		throw new QueryError(QUERY_LOGIC, "Expected an object but found " + value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> castList(Object value) {
+		if (value instanceof List) {
+			return (List<Object>) value;
+		}
+		throw new QueryError(QUERY_LOGIC, "Expected an array but found " + value);
+	}
+
+	static final class QueryError extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		final int type;
+
+		QueryError(int type, String message) {
+			super(message);
+			this.type = type;
+		}
+	}
+
+	static final class Sequence {
+		final List<Object> rows;
+		final FakeDatabase.Table table;
+
+		Sequence(List<Object> rows, FakeDatabase.Table table) {
+			this.rows = rows;
+			this.table = table;
+		}
+
+		List<Object> rows() {
+			return rows;
+		}
+	}
+
+	private static final class Db {
+		final String name;
+
+		Db(String name) {
+			this.name = Objects.requireNonNull(name, "name");
+		}
+	}
+
+	private static final class TableRef {
+		final String name;
+		final FakeDatabase.Table table;
+
+		TableRef(String name, FakeDatabase.Table table) {
+			this.name = name;
+			this.table = table;
+		}
+	}
+
+	private static final class Selection {
+		final TableRef table;
+		final Object key;
+
+		Selection(TableRef table, Object key) {
+			this.table = table;
+			this.key = key;
+		}
+	}
+
+	private static final class Func {
+		final List<Object> parameters;
+		final Object body;
+
+		Func(List<Object> parameters, Object body) {
+			this.parameters = parameters;
+			this.body = body;
+		}
+	}
+
+	private static final class Order {
+		final String field;
+		final boolean descending;
+
+		Order(String field, boolean descending) {
+			this.field = field;
+			this.descending = descending;
+		}
+	}
+
+	private static final class Literal {
+		final Object value;
+		final boolean present;
+
+		Literal(Object value, boolean present) {
+			this.value = value;
+			this.present = present;
+		}
+	}
+
+}
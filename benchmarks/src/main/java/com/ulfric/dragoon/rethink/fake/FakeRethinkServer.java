@@ -0,0 +1,410 @@
+package com.ulfric.dragoon.rethink.fake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class FakeRethinkServer implements AutoCloseable { // speaks the V1_0 wire protocol, enough for benchmarks
+
+	private static final int V1_0 = 0x34c2bdc3;
+	private static final int ITERATIONS = 4096;
+
+	private static final int START = 1;
+	private static final int CONTINUE = 2;
+	private static final int STOP = 3;
+	private static final int NOREPLY_WAIT = 4;
+	private static final int SERVER_INFO = 5;
+
+	private static final int SUCCESS_ATOM = 1;
+	private static final int SUCCESS_SEQUENCE = 2;
+	private static final int WAIT_COMPLETE = 4;
+	private static final int SERVER_INFO_RESPONSE = 5;
+	private static final int CLIENT_ERROR = 16;
+	private static final int RUNTIME_ERROR = 18;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private int port;
+		private String username = "admin";
+		private String password = "benchmark";
+		private long latency;
+		private Logger logger;
+
+		protected Builder() {
+		}
+
+		public FakeRethinkServer build() {
+			Objects.requireNonNull(username, "username");
+			Objects.requireNonNull(password, "password");
+
+			if (password.isEmpty()) {
+				throw new IllegalArgumentException("password must not be empty, it keys the SCRAM HMACs");
+			}
+
+			return new FakeRethinkServer(port, username, password, latency, logger);
+		}
+
+		public Builder port(int port) {
+			this.port = port;
+			return this;
+		}
+
+		public Builder username(String username) {
+			this.username = username;
+			return this;
+		}
+
+		public Builder password(String password) {
+			this.password = password;
+			return this;
+		}
+
+		public Builder latency(long latency, TimeUnit unit) {
+			this.latency = unit.toNanos(latency);
+			return this;
+		}
+
+		public Builder logger(Logger logger) {
+			this.logger = logger;
+			return this;
+		}
+	}
+
+	private final int port;
+	private final String username;
+	private final String password;
+	private final long latency;
+	private final Logger logger;
+	private final Gson gson = new GsonBuilder().serializeNulls().create();
+	private final SecureRandom random = new SecureRandom();
+	private final FakeDatabase database = new FakeDatabase();
+	private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+	private final ExecutorService workers;
+	private ServerSocket server;
+	private volatile boolean closed;
+
+	protected FakeRethinkServer(int port, String username, String password, long latency, Logger logger) {
+		this.port = port;
+		this.username = username;
+		this.password = password;
+		this.latency = latency;
+		this.logger = logger;
+
+		AtomicInteger threads = new AtomicInteger();
+		this.workers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "fake-rethinkdb-" + threads.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public FakeRethinkServer start() throws IOException {
+		server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		workers.execute(this::accept);
+		return this;
+	}
+
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	public FakeDatabase getDatabase() {
+		return database;
+	}
+
+	private void accept() {
+		while (!closed) {
+			try {
+				Socket client = server.accept();
+				client.setTcpNoDelay(true);
+				clients.add(client);
+				workers.execute(() -> serve(client));
+			} catch (IOException exception) {
+				if (!closed) {
+					log("Failed to accept a client", exception);
+				}
+			}
+		}
+	}
+
+	private void serve(Socket client) {
+		try (Socket socket = client) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+			if (handshake(in, out)) {
+				while (!closed) {
+					respond(in, out);
+				}
+			}
+		} catch (EOFException | SocketException disconnected) {
+			// client went away
+		} catch (IOException | GeneralSecurityException exception) {
+			log("Client connection failed", exception);
+		} finally {
+			clients.remove(client);
+		}
+	}
+
+	private boolean handshake(DataInputStream in, OutputStream out) throws IOException, GeneralSecurityException {
+		if (Integer.reverseBytes(in.readInt()) != V1_0) {
+			out.write("ERROR: Received an unsupported protocol version\0".getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			return false;
+		}
+
+		Map<String, Object> version = new HashMap<>();
+		version.put("success", true);
+		version.put("min_protocol_version", 0);
+		version.put("max_protocol_version", 0);
+		version.put("server_version", "2.3.0-fake");
+		writeMessage(out, version);
+
+		String clientFirst = (String) readMessage(in).get("authentication");
+		String clientFirstBare = clientFirst.substring(clientFirst.indexOf(",,") + 2);
+		Map<String, String> first = attributes(clientFirstBare);
+
+		byte[] salt = new byte[16];
+		random.nextBytes(salt);
+		byte[] serverNonce = new byte[18];
+		random.nextBytes(serverNonce);
+
+		String serverFirst = "r=" + first.get("r") + Base64.getEncoder().encodeToString(serverNonce)
+				+ ",s=" + Base64.getEncoder().encodeToString(salt)
+				+ ",i=" + ITERATIONS;
+		writeMessage(out, authentication(serverFirst));
+
+		String clientFinal = (String) readMessage(in).get("authentication");
+		int proofAt = clientFinal.lastIndexOf(",p=");
+		byte[] proof = Base64.getDecoder().decode(clientFinal.substring(proofAt + 3));
+		String authMessage = clientFirstBare + ',' + serverFirst + ',' + clientFinal.substring(0, proofAt);
+
+		byte[] saltedPassword = pbkdf2(password.getBytes(StandardCharsets.UTF_8), salt, ITERATIONS);
+		byte[] storedKey = sha256(hmac(saltedPassword, "Client Key"));
+		byte[] clientSignature = hmac(storedKey, authMessage);
+		for (int index = 0; index < proof.length && index < clientSignature.length; index++) {
+			proof[index] ^= clientSignature[index];
+		}
+
+		if (!username.equals(first.get("n")) || !MessageDigest.isEqual(sha256(proof), storedKey)) {
+			Map<String, Object> failure = new HashMap<>();
+			failure.put("success", false);
+			failure.put("error", "Wrong password");
+			failure.put("error_code", 12);
+			writeMessage(out, failure);
+			return false;
+		}
+
+		byte[] serverSignature = hmac(hmac(saltedPassword, "Server Key"), authMessage);
+		writeMessage(out, authentication("v=" + Base64.getEncoder().encodeToString(serverSignature)));
+		return true;
+	}
+
+	private Map<String, Object> authentication(String authentication) {
+		Map<String, Object> message = new HashMap<>();
+		message.put("success", true);
+		message.put("authentication", authentication);
+		return message;
+	}
+
+	private Map<String, String> attributes(String message) {
+		Map<String, String> attributes = new HashMap<>();
+		for (String attribute : message.split(",")) {
+			int split = attribute.indexOf('=');
+			if (split > 0) {
+				attributes.put(attribute.substring(0, split), attribute.substring(split + 1));
+			}
+		}
+		return attributes;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> readMessage(InputStream in) throws IOException {
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		int read;
+		while ((read = in.read()) != 0) {
+			if (read < 0) {
+				throw new EOFException();
+			}
+			message.write(read);
+		}
+		return gson.fromJson(new String(message.toByteArray(), StandardCharsets.UTF_8), Map.class);
+	}
+
+	private void writeMessage(OutputStream out, Map<String, Object> message) throws IOException {
+		out.write(gson.toJson(message).getBytes(StandardCharsets.UTF_8));
+		out.write(0);
+		out.flush();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void respond(DataInputStream in, OutputStream out) throws IOException {
+		long token = Long.reverseBytes(in.readLong());
+		byte[] json = new byte[Integer.reverseBytes(in.readInt())];
+		in.readFully(json);
+
+		List<Object> query = gson.fromJson(new String(json, StandardCharsets.UTF_8), List.class);
+		int type = ((Number) query.get(0)).intValue();
+
+		if (latency > 0) {
+			LockSupport.parkNanos(latency);
+		}
+
+		switch (type) {
+			case START:
+				Map<String, Object> options = query.size() > 2 ? (Map<String, Object>) query.get(2) : Collections.emptyMap();
+				Map<String, Object> response = run(query.get(1), options);
+				if (!Boolean.TRUE.equals(options.get("noreply"))) {
+					writeResponse(out, token, response);
+				}
+				break;
+
+			case CONTINUE:
+			case STOP:
+				writeResponse(out, token, response(SUCCESS_SEQUENCE, Collections.emptyList()));
+				break;
+
+			case NOREPLY_WAIT:
+				writeResponse(out, token, response(WAIT_COMPLETE, Collections.emptyList()));
+				break;
+
+			case SERVER_INFO:
+				Map<String, Object> info = new HashMap<>();
+				info.put("id", "fake");
+				info.put("name", "fake");
+				writeResponse(out, token, response(SERVER_INFO_RESPONSE, Collections.singletonList(info)));
+				break;
+
+			default:
+				writeResponse(out, token, response(CLIENT_ERROR, Collections.singletonList("Unsupported query type " + type)));
+		}
+	}
+
+	private Map<String, Object> run(Object term, Map<String, Object> options) {
+		try {
+			Object result = new FakeQuery(database, options).evaluate(term);
+			if (result instanceof FakeQuery.Sequence) {
+				return response(SUCCESS_SEQUENCE, ((FakeQuery.Sequence) result).rows());
+			}
+			return response(SUCCESS_ATOM, Collections.singletonList(FakeQuery.datum(result)));
+		} catch (FakeQuery.QueryError error) {
+			Map<String, Object> response = response(RUNTIME_ERROR, Collections.singletonList(error.getMessage()));
+			response.put("e", error.type);
+			return response;
+		}
+	}
+
+	private Map<String, Object> response(int type, List<?> results) {
+		Map<String, Object> response = new HashMap<>();
+		response.put("t", type);
+		response.put("r", results);
+		response.put("n", Collections.emptyList());
+		return response;
+	}
+
+	private void writeResponse(OutputStream out, long token, Map<String, Object> response) throws IOException {
+		byte[] json = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(token).putInt(json.length);
+
+		synchronized (out) {
+			out.write(header.array());
+			out.write(json);
+			out.flush();
+		}
+	}
+
+	private static byte[] pbkdf2(byte[] password, byte[] salt, int iterations) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(password, "HmacSHA256"));
+
+		mac.update(salt);
+		mac.update(new byte[] { 0, 0, 0, 1 });
+		byte[] block = mac.doFinal();
+		byte[] result = block.clone();
+		for (int iteration = 1; iteration < iterations; iteration++) {
+			block = mac.doFinal(block);
+			for (int index = 0; index < result.length; index++) {
+				result[index] ^= block[index];
+			}
+		}
+		return result;
+	}
+
+	private static byte[] hmac(byte[] key, String message) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(key, "HmacSHA256"));
+		return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static byte[] sha256(byte[] value) throws GeneralSecurityException {
+		return MessageDigest.getInstance("SHA-256").digest(value);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+
+		try {
+			if (server != null) {
+				server.close();
+			}
+		} catch (IOException exception) {
+			log("Failed to close the server socket", exception);
+		}
+
+		clients.forEach(client -> {
+			try {
+				client.close();
+			} catch (IOException ignore) {
+			}
+		});
+		workers.shutdownNow();
+	}
+
+	private void log(String message, Throwable thrown) {
+		if (logger != null) {
+			logger.log(Level.WARNING, message, thrown);
+		}
+	}
+
+}
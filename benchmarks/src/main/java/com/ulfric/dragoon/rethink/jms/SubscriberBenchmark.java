@@ -0,0 +1,79 @@
+package com.ulfric.dragoon.rethink.jms;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.jms.MessageConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ulfric.dragoon.rethink.Location;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriberBenchmark {
+
+	private static final int LOCATIONS = 256;
+
+	@Param({"1", "4"})
+	public int dispatchThreads;
+
+	private final AtomicLong delivered = new AtomicLong();
+	private RethinkSubscriber subscriber;
+	private DocumentUpdateEvent[] events;
+
+	@Setup
+	public void setup() {
+		MessageConsumer consumer = (MessageConsumer) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { MessageConsumer.class }, (proxy, method, args) -> null);
+		subscriber = new RethinkSubscriber(consumer, dispatchThreads, null);
+
+		Consumer<DocumentUpdateEvent> listener = event -> delivered.incrementAndGet();
+		events = new DocumentUpdateEvent[LOCATIONS];
+		for (int index = 0; index < LOCATIONS; index++) {
+			Location location = Location.builder().database("benchmark").table("documents").key("key-" + index).build();
+			subscriber.addListener(location, listener);
+
+			events[index] = new DocumentUpdateEvent();
+			events[index].setLocation(location);
+			events[index].setTimestamp(System.currentTimeMillis());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next = (next + 1) & (LOCATIONS - 1);
+		}
+	}
+
+	@Benchmark
+	public void receive(Cursor cursor) {
+		subscriber.receive(events[cursor.next()]);
+	}
+
+	@TearDown
+	public void tearDown() {
+		subscriber.stopDispatching();
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.ulfric.dragoon.rethink;
+
+public enum BackendType {
+
+	RETHINKDB,
+	MEMORY;
+
+	public static BackendType parse(String name) {
+		return EnumHelper.parse(BackendType.class, name, RETHINKDB);
+	}
+
+}
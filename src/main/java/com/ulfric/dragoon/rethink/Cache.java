@@ -0,0 +1,30 @@
+package com.ulfric.dragoon.rethink;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import com.ulfric.dragoon.rethink.cache.CachePolicy;
+
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface Cache {
+
+	CachePolicy value() default CachePolicy.TINY_LFU;
+
+	long maximumSize() default 0;
+
+	long maximumWeight() default 0;
+
+	long expireAfterAccess() default 0;
+
+	long expireAfterWrite() default 0;
+
+	long offHeapSize() default 0; // bytes, 0 keeps evicted documents only in the database
+
+	TimeUnit unit() default TimeUnit.SECONDS;
+
+}
@@ -0,0 +1,123 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.rethinkdb.ast.ReqlAst;
+import com.rethinkdb.net.Connection;
+import com.rethinkdb.net.Cursor;
+
+final class Changefeed implements Storage.Feed {
+
+	private static final long MINIMUM_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+	private static final long MAXIMUM_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+
+	private final String name;
+	private final ReqlAst query;
+	private final Runnable prepare;
+	private final ConnectionFactory connections;
+	private final Consumer<Map<String, Object>> changes;
+	private final Runnable opened;
+	private final Logger logger;
+	private final Thread thread;
+	private volatile boolean closed;
+	private volatile Cursor<Map<String, Object>> cursor;
+
+	Changefeed(String name, ReqlAst query, Runnable prepare, ConnectionFactory connections,
+			Consumer<Map<String, Object>> changes, Runnable opened, Logger logger) {
+		this.name = Objects.requireNonNull(name, "name");
+		this.query = Objects.requireNonNull(query, "query");
+		this.prepare = Objects.requireNonNull(prepare, "prepare");
+		this.connections = Objects.requireNonNull(connections, "connections");
+		this.changes = Objects.requireNonNull(changes, "changes");
+		this.opened = Objects.requireNonNull(opened, "opened");
+		this.logger = logger;
+
+		this.thread = new Thread(this::follow, "rethinkdb-changefeed-" + name);
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	private void follow() {
+		long backoff = MINIMUM_BACKOFF;
+		boolean dropped = false;
+
+		while (!closed) {
+			Connection connection = null;
+			try {
+				prepare.run();
+				connection = connections.openDedicated();
+				cursor = query.run(connection);
+
+				if (dropped) {
+					log(Level.INFO, "Changefeed " + name + " resumed", null);
+				}
+				opened.run(); // the first open too, documents read before the cursor existed may already be stale
+				backoff = MINIMUM_BACKOFF;
+
+				while (!closed && cursor.hasNext()) {
+					changes.accept(cursor.next());
+				}
+			} catch (RuntimeException exception) {
+				if (closed) {
+					break;
+				}
+
+				log(Level.WARNING, "Changefeed " + name + " dropped, reconnecting in " + backoff + "ms", exception);
+			} finally {
+				closeCursor();
+				connections.release(connection);
+			}
+
+			dropped = true;
+			if (!closed && !sleep(backoff)) {
+				break;
+			}
+			backoff = Math.min(MAXIMUM_BACKOFF, backoff * 2);
+		}
+	}
+
+	private boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void closeCursor() {
+		Cursor<Map<String, Object>> current = cursor;
+		cursor = null;
+
+		if (current != null) {
+			try {
+				current.close();
+			} catch (RuntimeException exception) {
+				log(Level.FINE, "Failed to close changefeed " + name, exception);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		closeCursor();
+		thread.interrupt();
+	}
+
+	private void log(Level level, String message, Throwable thrown) {
+		if (logger != null) {
+			logger.log(level, message, thrown);
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.ulfric.dragoon.rethink;
+
+import com.rethinkdb.gen.ast.ReqlExpr;
+
+public enum Comparison {
+
+	EQUAL {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.eq(value);
+		}
+	},
+	NOT_EQUAL {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.ne(value);
+		}
+	},
+	LESS {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.lt(value);
+		}
+	},
+	LESS_OR_EQUAL {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.le(value);
+		}
+	},
+	GREATER {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.gt(value);
+		}
+	},
+	GREATER_OR_EQUAL {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.ge(value);
+		}
+	},
+	CONTAINS {
+		@Override
+		ReqlExpr apply(ReqlExpr field, Object value) {
+			return field.contains(value);
+		}
+	};
+
+	abstract ReqlExpr apply(ReqlExpr field, Object value);
+
+}
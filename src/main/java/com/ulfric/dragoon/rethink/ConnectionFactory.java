@@ -1,9 +1,52 @@
 package com.ulfric.dragoon.rethink;
 
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.rethinkdb.net.Connection;
 
 public interface ConnectionFactory extends Supplier<Connection> {
 
+	@Override
+	Connection get(); // shared, never handed back
+
+	default Lease borrow() { // exclusive until the lease is closed
+		return new Lease(get(), ignore -> { });
+	}
+
+	default Connection openDedicated() {
+		return get();
+	}
+
+	default void release(Connection connection) { // for connections from openDedicated
+	}
+
+	default int getMaximumSize() {
+		return Integer.MAX_VALUE;
+	}
+
+	final class Lease implements AutoCloseable {
+		private final Connection connection;
+		private final Consumer<Connection> release;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		public Lease(Connection connection, Consumer<Connection> release) {
+			this.connection = Objects.requireNonNull(connection, "connection");
+			this.release = Objects.requireNonNull(release, "release");
+		}
+
+		public Connection connection() {
+			return connection;
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				release.accept(connection);
+			}
+		}
+	}
+
 }
@@ -14,4 +14,10 @@ public @interface Database {
 
 	String table() default RethinkContainer.DEFAULT_KEY;
 
+	Durability durability() default Durability.DEFAULT;
+
+	ReadMode readMode() default ReadMode.DEFAULT;
+
+	boolean noreply() default false;
+
 }
@@ -0,0 +1,13 @@
+package com.ulfric.dragoon.rethink;
+
+public enum Durability {
+
+	DEFAULT,
+	HARD,
+	SOFT;
+
+	public static Durability parse(String name) {
+		return EnumHelper.parse(Durability.class, name, DEFAULT);
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Locale;
+
+public class EnumHelper {
+
+	public static <E extends Enum<E>> E parse(Class<E> type, String name, E fallback) { // blank is the fallback, otherwise case and dash insensitive
+		if (name == null || name.trim().isEmpty()) {
+			return fallback;
+		}
+
+		return Enum.valueOf(type, name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+	}
+
+	private EnumHelper() {
+	}
+
+}
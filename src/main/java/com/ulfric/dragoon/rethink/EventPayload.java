@@ -0,0 +1,13 @@
+package com.ulfric.dragoon.rethink;
+
+public enum EventPayload {
+
+	NONE,
+	VALUE,
+	PATCH;
+
+	public static EventPayload parse(String name) {
+		return EnumHelper.parse(EventPayload.class, name, NONE);
+	}
+
+}
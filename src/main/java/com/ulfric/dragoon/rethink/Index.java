@@ -0,0 +1,21 @@
+package com.ulfric.dragoon.rethink;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+@Retention(RUNTIME)
+@Target(TYPE)
+@Repeatable(Indexes.class)
+public @interface Index {
+
+	String value();
+
+	String[] fields() default {}; // defaults to the field named after the index, more than one makes a compound index
+
+	boolean multi() default false;
+
+}
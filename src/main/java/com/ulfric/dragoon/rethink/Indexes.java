@@ -0,0 +1,15 @@
+package com.ulfric.dragoon.rethink;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface Indexes {
+
+	Index[] value();
+
+}
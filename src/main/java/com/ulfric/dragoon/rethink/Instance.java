@@ -7,4 +7,10 @@ public interface Instance<T extends Document> extends Supplier<T> {
 
 	void addListener(Consumer<T> listener);
 
+	void addListener(Consumer<T> listener, boolean coalesce);
+
+	void removeListener(Consumer<T> listener);
+
+	boolean isDetached(); // evicted or closed by its store, it keeps its last value but no longer sees updates
+
 }
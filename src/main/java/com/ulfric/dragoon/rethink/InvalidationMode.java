@@ -0,0 +1,12 @@
+package com.ulfric.dragoon.rethink;
+
+public enum InvalidationMode {
+
+	ACTIVEMQ,
+	CHANGEFEED;
+
+	public static InvalidationMode parse(String name) {
+		return EnumHelper.parse(InvalidationMode.class, name, ACTIVEMQ);
+	}
+
+}
@@ -7,7 +7,7 @@ import org.apache.curator.shaded.com.google.common.base.MoreObjects;
 public class Location {
 
 	public static Location key(Object key) {
-		return new Location(null, null, key == null ? null : key.toString());
+		return key(key == null ? null : key.toString());
 	}
 
 	public static Location key(String key) {
@@ -36,7 +36,7 @@ public class Location {
 		}
 
 		public Builder table(String table) {
-			this.table = table.replace('/', '_');
+			this.table = table == null ? null : table.replace('/', '_');
 			return this;
 		}
 
@@ -54,13 +54,13 @@ public class Location {
 	private final String database;
 	private final String table;
 	private final String key;
-	private int hashCode;
-	private boolean hashed;
+	private transient int hash;
 
 	protected Location(String database, String table, String key) {
 		this.database = database;
 		this.table = table;
 		this.key = key;
+		this.hash = Objects.hash(database, table, key);
 	}
 
 	public final String getDatabase() {
@@ -75,8 +75,22 @@ public class Location {
 		return key;
 	}
 
+	public Location withKey(Object key) {
+		return withKey(key == null ? null : key.toString());
+	}
+
+	public Location withKey(String key) {
+		if (Objects.equals(this.key, key)) {
+			return this;
+		}
+
+		return new Location(database, table, key); // table is already sanitized
+	}
+
 	public Builder toBuilder() {
-		return builder().database(database).table(table).key(key);
+		Builder builder = builder().database(database).key(key);
+		builder.table = table; // already sanitized
+		return builder;
 	}
 
 	@Override
@@ -102,13 +116,12 @@ public class Location {
 
 	@Override
 	public int hashCode() {
-		if (hashed) {
-			return hashCode;
+		int hash = this.hash;
+		if (hash == 0) { // deserialized without running the constructor
+			hash = Objects.hash(database, table, key);
+			this.hash = hash;
 		}
-
-		hashCode = Objects.hash(database, table, key);
-		hashed = true;
-		return hashCode;
+		return hash;
 	}
 
 	@Override
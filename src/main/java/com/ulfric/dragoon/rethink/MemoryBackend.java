@@ -0,0 +1,63 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class MemoryBackend implements StorageBackend { // embedded, for development and load tests
+
+	private final Map<Location, Table> tables = new ConcurrentHashMap<>();
+
+	@Override
+	public Storage open(Location table, StoreSettings settings, Index... indexes) {
+		Objects.requireNonNull(table, "table");
+
+		Table opened = table(table);
+		Arrays.stream(indexes).forEach(index -> opened.indexes.putIfAbsent(index.value(), index));
+		return new MemoryStorage(this, table);
+	}
+
+	public int size(Location table) {
+		Table rows = tables.get(table(table.getDatabase(), table.getTable()));
+		return rows == null ? 0 : rows.rows.size();
+	}
+
+	public void clear() {
+		tables.values().forEach(table -> table.rows.clear());
+	}
+
+	@Override
+	public void close() {
+		tables.clear();
+	}
+
+	Table table(Location location) {
+		return tables.computeIfAbsent(table(location.getDatabase(), location.getTable()), ignore -> new Table());
+	}
+
+	private Location table(String database, String table) {
+		return Location.builder().database(database).table(table).build();
+	}
+
+	static final class Table {
+		final ConcurrentSkipListMap<String, Map<String, Object>> rows = new ConcurrentSkipListMap<>();
+		final Map<String, Index> indexes = new ConcurrentHashMap<>();
+		final CopyOnWriteArrayList<Consumer<Map<String, Object>>> feeds = new CopyOnWriteArrayList<>();
+		final Object[] locks = new Object[64];
+
+		Table() {
+			for (int stripe = 0; stripe < locks.length; stripe++) {
+				locks[stripe] = new Object();
+			}
+		}
+
+		Object lock(String key) {
+			return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+		}
+	}
+
+}
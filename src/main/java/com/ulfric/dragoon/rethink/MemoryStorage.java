@@ -0,0 +1,544 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.ulfric.dragoon.rethink.response.Response;
+import com.ulfric.dragoon.rethink.response.ResponseHelper;
+
+final class MemoryStorage implements Storage {
+
+	private final MemoryBackend backend;
+	private final Location defaultTable;
+
+	MemoryStorage(MemoryBackend backend, Location defaultTable) {
+		this.backend = backend;
+		this.defaultTable = defaultTable;
+	}
+
+	@Override
+	public Map<String, Object> get(Location location) {
+		return backend.table(location).rows.get(location.getKey());
+	}
+
+	@Override
+	public void getAll(Location table, Object[] ids, Consumer<Map<String, Object>> consumer) {
+		MemoryBackend.Table rows = backend.table(table);
+		for (Object id : ids) {
+			Map<String, Object> document = rows.rows.get(String.valueOf(id));
+			if (document != null) {
+				consumer.accept(document);
+			}
+		}
+	}
+
+	@Override
+	public void getAllByIndex(Location table, String index, Object[] values, Consumer<Map<String, Object>> consumer) {
+		MemoryBackend.Table rows = backend.table(table);
+		Index definition = index(rows, table, index);
+
+		List<Object> wanted = new ArrayList<>(values.length);
+		Arrays.stream(values).forEach(value -> wanted.add(normalize(value)));
+
+		for (Map<String, Object> document : rows.rows.values()) { // no secondary structures, every lookup is a scan
+			for (Object value : indexValues(definition, document)) {
+				if (wanted.stream().anyMatch(candidate -> compare(candidate, value) == 0)) {
+					consumer.accept(document);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void between(Location table, String index, Object lower, Object upper, Consumer<Map<String, Object>> consumer) {
+		MemoryBackend.Table rows = backend.table(table);
+
+		if (index == null || "id".equals(index)) {
+			NavigableMap<String, Map<String, Object>> range = rows.rows;
+			if (lower != null) {
+				range = range.tailMap(String.valueOf(lower), true);
+			}
+			if (upper != null) {
+				range = range.headMap(String.valueOf(upper), false);
+			}
+			range.values().forEach(consumer);
+			return;
+		}
+
+		Index definition = index(rows, table, index);
+		Object from = normalize(lower);
+		Object to = normalize(upper);
+		for (Map<String, Object> document : rows.rows.values()) {
+			for (Object value : indexValues(definition, document)) {
+				if ((from == null || compare(value, from) >= 0) && (to == null || compare(value, to) < 0)) {
+					consumer.accept(document);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Stream<Map<String, Object>> scan(Location table, int batchSize) {
+		return backend.table(table).rows.values().stream();
+	}
+
+	@Override
+	public void find(Location table, Query query, Consumer<Map<String, Object>> consumer) {
+		List<String> fields = query.getFields();
+		for (Map<String, Object> document : evaluate(table, query)) {
+			if (fields.isEmpty()) {
+				consumer.accept(document);
+				continue;
+			}
+
+			Map<String, Object> plucked = new LinkedHashMap<>();
+			plucked.put("id", document.get("id")); // keeps partial documents addressable
+			for (String field : fields) {
+				if (document.containsKey(field)) {
+					plucked.put(field, document.get(field));
+				}
+			}
+			consumer.accept(plucked);
+		}
+	}
+
+	@Override
+	public long count(Location table, Query query) {
+		return evaluate(table, query).size();
+	}
+
+	private List<Map<String, Object>> evaluate(Location table, Query query) {
+		if (!query.isPortable()) {
+			throw new UnsupportedOperationException("Raw ReQL filters need the rethinkdb backend, use where(..) instead");
+		}
+
+		List<Map<String, Object>> matches = new ArrayList<>();
+		Consumer<Map<String, Object>> matcher = document -> {
+			for (Query.Condition condition : query.getConditions()) {
+				if (!matches(document, condition)) {
+					return;
+				}
+			}
+			matches.add(document);
+		};
+
+		if (query.isRanged()) {
+			between(table, query.getIndex(), query.getLower(), query.getUpper(), matcher);
+		} else {
+			backend.table(table).rows.values().forEach(matcher);
+		}
+
+		List<Query.Order> orderBy = query.getOrderBy();
+		if (!orderBy.isEmpty()) {
+			matches.sort((left, right) -> {
+				for (Query.Order order : orderBy) {
+					int compared = compare(left.get(order.field), right.get(order.field));
+					if (compared != 0) {
+						return order.descending ? -compared : compared;
+					}
+				}
+				return 0;
+			});
+		}
+
+		int limit = query.getLimit();
+		return limit >= 0 && limit < matches.size() ? matches.subList(0, limit) : matches;
+	}
+
+	private boolean matches(Map<String, Object> document, Query.Condition condition) {
+		if (!document.containsKey(condition.field)) {
+			return false; // ReQL filters skip rows missing the field
+		}
+
+		Object field = document.get(condition.field);
+		Object value = normalize(condition.value);
+
+		switch (condition.comparison) {
+			case EQUAL:
+				return compare(field, value) == 0;
+			case NOT_EQUAL:
+				return compare(field, value) != 0;
+			case LESS:
+				return compare(field, value) < 0;
+			case LESS_OR_EQUAL:
+				return compare(field, value) <= 0;
+			case GREATER:
+				return compare(field, value) > 0;
+			case GREATER_OR_EQUAL:
+				return compare(field, value) >= 0;
+			case CONTAINS:
+				return field instanceof List && ((List<?>) field).stream().anyMatch(element -> compare(element, value) == 0);
+			default:
+				throw new IllegalArgumentException("Unknown comparison " + condition.comparison);
+		}
+	}
+
+	@Override
+	public Response replace(Location location, Map<?, ?> document) {
+		Map<String, Object> replacement = copy(document);
+		replacement.put("id", location.getKey());
+		return write(backend.table(location), location.getKey(), previous -> replacement);
+	}
+
+	@Override
+	public Response patch(Location location, JsonObject patch) {
+		return write(backend.table(location), location.getKey(), previous -> previous == null ? null : merge(previous, patch));
+	}
+
+	@Override
+	public Response update(Location location, Update update, Consumer<Map<String, Object>> changed) {
+		List<Map<String, Object>> updated = new ArrayList<>(1);
+
+		Response response;
+		try {
+			response = write(backend.table(location), location.getKey(), previous -> {
+				if (previous == null) {
+					return null; // skipped, like ReQL
+				}
+
+				Map<String, Object> next = apply(previous, update);
+				updated.add(next);
+				return next;
+			});
+		} catch (IllegalArgumentException exception) { // thrown before anything was stored
+			response = new Response();
+			response.setErrors(1);
+			response.setFirstError(exception.getMessage());
+			return response;
+		}
+
+		if (ResponseHelper.changedData(response)) {
+			changed.accept(updated.get(0));
+		}
+
+		return response;
+	}
+
+	private static Map<String, Object> apply(Map<String, Object> document, Update update) {
+		Map<String, Object> next = new LinkedHashMap<>(document);
+
+		if (update.isVersioned()) {
+			String versionField = update.getVersionField();
+			Object version = document.get(versionField);
+			if (compare(version == null ? 0L : version, update.getExpectedVersion()) != 0) {
+				throw new IllegalArgumentException(update.versionMismatch());
+			}
+			next.put(versionField, update.getExpectedVersion() + 1);
+		}
+
+		for (Update.Change change : update.getChanges()) {
+			Object current = document.get(change.field);
+
+			switch (change.operation) {
+				case SET:
+					next.put(change.field, normalize(change.value));
+					break;
+				case INCREMENT:
+					next.put(change.field, add(current == null ? 0L : current, (Number) normalize(change.value), change.field));
+					break;
+				case APPEND:
+					if (current != null && !(current instanceof List)) {
+						throw new IllegalArgumentException("Expected " + change.field + " to be an array, was " + current);
+					}
+					List<Object> appended = current == null ? new ArrayList<>() : new ArrayList<>((List<?>) current);
+					appended.add(normalize(change.value));
+					next.put(change.field, appended);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown operation " + change.operation);
+			}
+		}
+
+		return next;
+	}
+
+	private static Number add(Object current, Number amount, String field) {
+		if (!(current instanceof Number)) {
+			throw new IllegalArgumentException("Expected " + field + " to be a number, was " + current);
+		}
+
+		if (current instanceof Long && amount instanceof Long) {
+			return (Long) current + (Long) amount;
+		}
+
+		return ((Number) current).doubleValue() + amount.doubleValue();
+	}
+
+	@Override
+	public Response insertAll(Location table, List<? extends Map<?, ?>> documents) {
+		MemoryBackend.Table rows = backend.table(table);
+
+		Response total = new Response();
+		for (Map<?, ?> document : documents) {
+			Map<String, Object> replacement = copy(document);
+			String key = String.valueOf(replacement.get("id"));
+			ResponseHelper.add(total, write(rows, key, previous -> replacement));
+		}
+		return total;
+	}
+
+	@Override
+	public Response delete(Location location) {
+		return write(backend.table(location), location.getKey(), previous -> null);
+	}
+
+	@Override
+	public Response deleteAll(Location table, Object[] ids) {
+		MemoryBackend.Table rows = backend.table(table);
+
+		Response total = new Response();
+		for (Object id : ids) {
+			ResponseHelper.add(total, write(rows, String.valueOf(id), previous -> null));
+		}
+		return total;
+	}
+
+	@Override
+	public Feed follow(Consumer<Map<String, Object>> changes, Runnable opened) {
+		MemoryBackend.Table table = backend.table(defaultTable);
+		table.feeds.add(changes);
+		return () -> table.feeds.remove(changes); // open before follow returns and never drops, nothing to catch up on
+	}
+
+	@Override
+	public int getParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private Response write(MemoryBackend.Table table, String key, UnaryOperator<Map<String, Object>> change) {
+		Response response = new Response();
+
+		synchronized (table.lock(key)) { // keeps feeds in write order per document
+			Map<String, Object> previous = table.rows.get(key);
+			Map<String, Object> next = change.apply(previous);
+
+			if (next == null) {
+				if (previous == null) {
+					response.setSkipped(1);
+					return response;
+				}
+				table.rows.remove(key);
+				response.setDeleted(1);
+			} else if (previous == null) {
+				table.rows.put(key, next);
+				response.setInserted(1);
+			} else if (previous.equals(next)) {
+				response.setUnchanged(1);
+				return response;
+			} else {
+				table.rows.put(key, next);
+				response.setReplaced(1);
+			}
+
+			publish(table, previous, next);
+		}
+
+		return response;
+	}
+
+	private void publish(MemoryBackend.Table table, Map<String, Object> previous, Map<String, Object> next) {
+		if (table.feeds.isEmpty()) {
+			return;
+		}
+
+		Map<String, Object> change = new LinkedHashMap<>();
+		change.put("new_val", next);
+		change.put("old_val", previous);
+
+		for (Consumer<Map<String, Object>> feed : table.feeds) {
+			try {
+				feed.accept(change);
+			} catch (RuntimeException exception) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+			}
+		}
+	}
+
+	private Index index(MemoryBackend.Table rows, Location table, String name) {
+		Index index = rows.indexes.get(name);
+		if (index == null) {
+			throw new IllegalArgumentException("Index '" + name + "' was not declared on " + table);
+		}
+		return index;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object> indexValues(Index index, Map<String, Object> document) {
+		String[] fields = index.fields().length == 0 ? new String[] { index.value() } : index.fields();
+
+		Object value;
+		if (fields.length == 1) {
+			value = document.get(fields[0]);
+		} else {
+			List<Object> compound = new ArrayList<>(fields.length);
+			for (String field : fields) {
+				Object part = document.get(field);
+				if (part == null) {
+					return Collections.emptyList();
+				}
+				compound.add(part);
+			}
+			value = compound;
+		}
+
+		if (value == null) {
+			return Collections.emptyList();
+		}
+
+		return index.multi() && value instanceof List ? (List<Object>) value : Collections.singletonList(value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compare(Object left, Object right) { // same type order as ReQL: arrays, booleans, null, numbers, objects, strings
+		int rank = Integer.compare(rank(left), rank(right));
+		if (rank != 0 || left == null) {
+			return rank;
+		}
+
+		if (left instanceof Number) {
+			return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+		}
+
+		if (left instanceof List) {
+			List<Object> first = (List<Object>) left;
+			List<Object> second = (List<Object>) right;
+			for (int index = 0; index < Math.min(first.size(), second.size()); index++) {
+				int compared = compare(first.get(index), second.get(index));
+				if (compared != 0) {
+					return compared;
+				}
+			}
+			return Integer.compare(first.size(), second.size());
+		}
+
+		if (left instanceof Comparable && left.getClass() == right.getClass()) {
+			return ((Comparable<Object>) left).compareTo(right);
+		}
+
+		return left.equals(right) ? 0 : String.valueOf(left).compareTo(String.valueOf(right));
+	}
+
+	private static int rank(Object value) {
+		if (value instanceof List) {
+			return 0;
+		}
+		if (value instanceof Boolean) {
+			return 1;
+		}
+		if (value == null) {
+			return 2;
+		}
+		if (value instanceof Number) {
+			return 3;
+		}
+		if (value instanceof Map) {
+			return 4;
+		}
+		return 5;
+	}
+
+	private static Map<String, Object> merge(Map<String, Object> target, JsonObject patch) {
+		Map<String, Object> merged = new LinkedHashMap<>(target);
+
+		for (Map.Entry<String, JsonElement> entry : patch.entrySet()) {
+			String key = entry.getKey();
+			JsonElement value = entry.getValue();
+
+			if (value.isJsonNull()) {
+				merged.remove(key);
+			} else if (value.isJsonObject() && merged.get(key) instanceof Map) {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> nested = (Map<String, Object>) merged.get(key);
+				merged.put(key, merge(nested, value.getAsJsonObject()));
+			} else {
+				merged.put(key, value(value));
+			}
+		}
+
+		return merged;
+	}
+
+	private static Object value(JsonElement element) {
+		if (element == null || element.isJsonNull()) {
+			return null;
+		}
+
+		if (element.isJsonObject()) {
+			return merge(Collections.emptyMap(), element.getAsJsonObject());
+		}
+
+		if (element.isJsonArray()) {
+			List<Object> values = new ArrayList<>();
+			element.getAsJsonArray().forEach(value -> values.add(value(value)));
+			return values;
+		}
+
+		JsonPrimitive primitive = element.getAsJsonPrimitive();
+		if (primitive.isBoolean()) {
+			return primitive.getAsBoolean();
+		}
+		if (primitive.isNumber()) {
+			return number(primitive.getAsNumber());
+		}
+		return primitive.getAsString();
+	}
+
+	private static Map<String, Object> copy(Map<?, ?> document) {
+		Map<String, Object> copy = new LinkedHashMap<>(document.size());
+		document.forEach((key, value) -> copy.put(String.valueOf(key), normalize(value)));
+		return copy;
+	}
+
+	private static Object normalize(Object value) { // documents are copied in so callers can't mutate what is stored
+		if (value instanceof Map) {
+			return copy((Map<?, ?>) value);
+		}
+
+		if (value instanceof Collection) {
+			List<Object> values = new ArrayList<>(((Collection<?>) value).size());
+			((Collection<?>) value).forEach(element -> values.add(normalize(element)));
+			return values;
+		}
+
+		if (value instanceof Object[]) {
+			return normalize(Arrays.asList((Object[]) value));
+		}
+
+		if (value instanceof Number) {
+			return number((Number) value);
+		}
+
+		return value;
+	}
+
+	private static Number number(Number number) {
+		if (number instanceof Double || number instanceof Float) {
+			return number.doubleValue();
+		}
+
+		if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+			return number.longValue();
+		}
+
+		String text = number.toString();
+		try {
+			return Long.parseLong(text);
+		} catch (NumberFormatException notIntegral) {
+			return Double.parseDouble(text);
+		}
+	}
+
+}
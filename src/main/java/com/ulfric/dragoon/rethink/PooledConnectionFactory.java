@@ -0,0 +1,416 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.rethinkdb.RethinkDB;
+import com.rethinkdb.gen.exc.ReqlDriverError;
+import com.rethinkdb.net.Connection;
+import com.ulfric.dragoon.rethink.metrics.Metrics;
+
+public class PooledConnectionFactory implements ConnectionFactory, AutoCloseable {
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private Supplier<Connection> connector;
+		private int minimumSize = 1;
+		private int maximumSize = Runtime.getRuntime().availableProcessors();
+		private long idleTimeout = TimeUnit.MINUTES.toMillis(5);
+		private long borrowTimeout = TimeUnit.SECONDS.toMillis(15);
+		private long healthCheckInterval = TimeUnit.SECONDS.toMillis(30);
+		private Logger logger;
+		private Metrics metrics = Metrics.noop();
+
+		protected Builder() {
+		}
+
+		public PooledConnectionFactory build() {
+			Objects.requireNonNull(connector, "connector");
+			Objects.requireNonNull(metrics, "metrics");
+
+			if (minimumSize < 0) {
+				throw new IllegalArgumentException("minimumSize must not be negative, was " + minimumSize);
+			}
+
+			if (maximumSize < 1 || maximumSize < minimumSize) {
+				throw new IllegalArgumentException("maximumSize must be positive and at least minimumSize, was " + maximumSize);
+			}
+
+			return new PooledConnectionFactory(connector, minimumSize, maximumSize,
+					idleTimeout, borrowTimeout, healthCheckInterval, logger, metrics);
+		}
+
+		public Builder connector(Supplier<Connection> connector) {
+			this.connector = connector;
+			return this;
+		}
+
+		public Builder minimumSize(int minimumSize) {
+			this.minimumSize = minimumSize;
+			return this;
+		}
+
+		public Builder maximumSize(int maximumSize) {
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		public Builder idleTimeout(long idleTimeout, TimeUnit unit) {
+			this.idleTimeout = unit.toMillis(idleTimeout);
+			return this;
+		}
+
+		public Builder borrowTimeout(long borrowTimeout, TimeUnit unit) {
+			this.borrowTimeout = unit.toMillis(borrowTimeout);
+			return this;
+		}
+
+		public Builder healthCheckInterval(long healthCheckInterval, TimeUnit unit) {
+			this.healthCheckInterval = unit.toMillis(healthCheckInterval);
+			return this;
+		}
+
+		public Builder logger(Logger logger) {
+			this.logger = logger;
+			return this;
+		}
+
+		public Builder metrics(Metrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+	}
+
+	private final Supplier<Connection> connector;
+	private final int minimumSize;
+	private final int maximumSize;
+	private final long idleTimeout;
+	private final long borrowTimeout;
+	private final Logger logger;
+	private final Metrics metrics;
+	private final Semaphore permits;
+	private final BlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+	private final Set<Connection> borrowed = ConcurrentHashMap.newKeySet();
+	private final Set<Connection> dedicated = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger size = new AtomicInteger();
+	private volatile Connection shared;
+	private final ScheduledExecutorService maintenance;
+	private volatile boolean closed;
+
+	protected PooledConnectionFactory(Supplier<Connection> connector, int minimumSize, int maximumSize,
+			long idleTimeout, long borrowTimeout, long healthCheckInterval, Logger logger, Metrics metrics) {
+		this.connector = connector;
+		this.minimumSize = minimumSize;
+		this.maximumSize = maximumSize;
+		this.idleTimeout = idleTimeout;
+		this.borrowTimeout = borrowTimeout;
+		this.logger = logger;
+		this.metrics = metrics;
+		this.permits = new Semaphore(maximumSize, true);
+
+		metrics.gauge("pool.size", this::getSize);
+		metrics.gauge("pool.idle", this::getIdleCount);
+		metrics.gauge("pool.borrowed", this::getBorrowedCount);
+
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "rethinkdb-pool-maintenance");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (healthCheckInterval > 0) {
+			maintenance.scheduleWithFixedDelay(this::maintain, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+		}
+		maintenance.execute(this::fill);
+	}
+
+	@Override
+	public Connection get() { // kept outside the permits, callers never hand it back
+		Connection current = shared;
+		if (current != null && current.isOpen()) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (closed) {
+				throw new ReqlDriverError("Connection pool is closed");
+			}
+
+			if (shared == null) {
+				Connection connection = connector.get();
+				if (connection == null) {
+					throw new ReqlDriverError("Connector did not produce a connection");
+				}
+				shared = connection;
+			} else if (!shared.isOpen()) {
+				shared.reconnect();
+			}
+
+			return shared;
+		}
+	}
+
+	@Override
+	public Lease borrow() {
+		return new Lease(take(), this::release);
+	}
+
+	private Connection take() {
+		if (closed) {
+			throw new ReqlDriverError("Connection pool is closed");
+		}
+
+		long start = metrics.start();
+		acquirePermit();
+
+		try {
+			Connection connection = takeIdle();
+			if (connection == null) {
+				connection = open();
+			}
+
+			borrowed.add(connection);
+			metrics.stop("pool.borrow.wait", start);
+			return connection;
+		} catch (RuntimeException exception) {
+			permits.release();
+			throw exception;
+		}
+	}
+
+	@Override
+	public Connection openDedicated() {
+		if (closed) {
+			throw new ReqlDriverError("Connection pool is closed");
+		}
+
+		Connection connection = connector.get();
+		if (connection == null) {
+			throw new ReqlDriverError("Connector did not produce a connection");
+		}
+
+		dedicated.add(connection);
+		metrics.increment("pool.dedicated.opened");
+		return connection;
+	}
+
+	@Override
+	public void release(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+
+		if (dedicated.remove(connection)) {
+			closeQuietly(connection);
+			return;
+		}
+
+		if (!borrowed.remove(connection)) {
+			return;
+		}
+
+		try {
+			if (closed || !connection.isOpen()) {
+				discard(connection);
+			} else {
+				idle.offerFirst(new IdleConnection(connection));
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	public int getSize() {
+		return size.get();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getBorrowedCount() {
+		return borrowed.size();
+	}
+
+	@Override
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	private void acquirePermit() {
+		try {
+			if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+				throw new ReqlDriverError("Timed out after " + borrowTimeout + "ms waiting for a pooled connection");
+			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new ReqlDriverError("Interrupted while waiting for a pooled connection", exception);
+		}
+	}
+
+	private Connection takeIdle() {
+		IdleConnection candidate;
+		while ((candidate = idle.pollFirst()) != null) {
+			if (candidate.connection.isOpen()) {
+				return candidate.connection;
+			}
+
+			discard(candidate.connection);
+		}
+
+		return null;
+	}
+
+	private Connection open() {
+		if (size.incrementAndGet() > maximumSize) { // reserve the slot before connecting
+			size.decrementAndGet();
+			throw new ReqlDriverError("Connection pool is at its maximum size of " + maximumSize);
+		}
+
+		Connection connection;
+		try {
+			connection = connector.get();
+		} catch (RuntimeException exception) {
+			size.decrementAndGet();
+			throw exception;
+		}
+
+		if (connection == null) {
+			size.decrementAndGet();
+			throw new ReqlDriverError("Connector did not produce a connection");
+		}
+		metrics.increment("pool.opened");
+		return connection;
+	}
+
+	private void discard(Connection connection) {
+		size.decrementAndGet();
+		metrics.increment("pool.discarded");
+		closeQuietly(connection);
+	}
+
+	private void closeQuietly(Connection connection) {
+		try {
+			if (connection.isOpen()) {
+				connection.close();
+			}
+		} catch (RuntimeException exception) {
+			log(Level.FINE, "Failed to close pooled connection", exception);
+		}
+	}
+
+	private void maintain() {
+		try {
+			evictIdle();
+			fill();
+		} catch (RuntimeException exception) {
+			log(Level.WARNING, "Connection pool maintenance failed", exception);
+		}
+	}
+
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+
+		Iterator<IdleConnection> iterator = idle.descendingIterator();
+		while (iterator.hasNext()) {
+			IdleConnection candidate = iterator.next();
+			if (!permits.tryAcquire()) {
+				return; // every permit is out, a connection under check would let a borrower open past maximumSize
+			}
+
+			try {
+				if (!idle.removeFirstOccurrence(candidate)) {
+					continue; // borrowed in the meantime
+				}
+
+				boolean expired = idleTimeout > 0 && now - candidate.since > idleTimeout && size.get() > minimumSize;
+				if (expired || !isHealthy(candidate.connection)) {
+					discard(candidate.connection);
+				} else {
+					idle.offerLast(candidate);
+				}
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	private boolean isHealthy(Connection connection) {
+		if (!connection.isOpen()) {
+			return false;
+		}
+
+		try {
+			RethinkDB.r.expr(1).run(connection);
+			return true;
+		} catch (RuntimeException exception) {
+			log(Level.FINE, "Pooled connection failed health check", exception);
+			return false;
+		}
+	}
+
+	private void fill() {
+		while (!closed && size.get() < minimumSize && permits.tryAcquire()) {
+			try {
+				idle.offerLast(new IdleConnection(open()));
+			} catch (RuntimeException exception) {
+				log(Level.WARNING, "Failed to open pooled connection", exception);
+				return;
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		maintenance.shutdownNow();
+
+		IdleConnection candidate;
+		while ((candidate = idle.pollFirst()) != null) {
+			discard(candidate.connection);
+		}
+
+		dedicated.forEach(this::closeQuietly);
+		dedicated.clear();
+
+		synchronized (this) {
+			if (shared != null) {
+				closeQuietly(shared);
+				shared = null;
+			}
+		}
+	}
+
+	private void log(Level level, String message, Throwable thrown) {
+		if (logger != null) {
+			logger.log(level, message, thrown);
+		}
+	}
+
+	private static final class IdleConnection {
+		final Connection connection;
+		final long since = System.currentTimeMillis();
+
+		IdleConnection(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.ulfric.dragoon.rethink;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface Preload {
+
+	boolean value() default true;
+
+	int ranges() default 0; // 0 uses available processors
+
+}
@@ -0,0 +1,207 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.curator.shaded.com.google.common.base.MoreObjects;
+
+import com.rethinkdb.gen.ast.ReqlFunction1;
+
+public final class Query {
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private String index;
+		private Object lower;
+		private Object upper;
+		private boolean ranged;
+		private final List<Condition> conditions = new ArrayList<>();
+		private final List<ReqlFunction1> filters = new ArrayList<>();
+		private final List<Order> orderBy = new ArrayList<>();
+		private int limit = -1;
+		private final List<String> fields = new ArrayList<>();
+
+		protected Builder() {
+		}
+
+		public Query build() {
+			return new Query(this);
+		}
+
+		public Builder where(String field, Object value) {
+			return where(field, Comparison.EQUAL, value);
+		}
+
+		public Builder where(String field, Comparison comparison, Object value) {
+			Objects.requireNonNull(field, "field");
+			Objects.requireNonNull(comparison, "comparison");
+
+			conditions.add(new Condition(field, comparison, value));
+			return this;
+		}
+
+		public Builder filter(ReqlFunction1 predicate) { // raw ReQL, only the rethinkdb backend can run it
+			Objects.requireNonNull(predicate, "predicate");
+
+			filters.add(predicate);
+			return this;
+		}
+
+		public Builder between(String index, Object lower, Object upper) {
+			Objects.requireNonNull(index, "index");
+
+			this.index = index;
+			this.lower = lower;
+			this.upper = upper;
+			this.ranged = true;
+			return this;
+		}
+
+		public Builder orderBy(String field) {
+			Objects.requireNonNull(field, "field");
+
+			orderBy.add(new Order(field, false));
+			return this;
+		}
+
+		public Builder orderByDescending(String field) {
+			Objects.requireNonNull(field, "field");
+
+			orderBy.add(new Order(field, true));
+			return this;
+		}
+
+		public Builder limit(int limit) {
+			if (limit < 0) {
+				throw new IllegalArgumentException("limit must not be negative, was " + limit);
+			}
+
+			this.limit = limit;
+			return this;
+		}
+
+		public Builder pluck(String... fields) {
+			this.fields.addAll(Arrays.asList(fields));
+			return this;
+		}
+	}
+
+	private final String index;
+	private final Object lower;
+	private final Object upper;
+	private final boolean ranged;
+	private final List<Condition> conditions;
+	private final List<ReqlFunction1> filters;
+	private final List<Order> orderBy;
+	private final int limit;
+	private final List<String> fields;
+
+	private Query(Builder builder) {
+		this.index = builder.index;
+		this.lower = builder.lower;
+		this.upper = builder.upper;
+		this.ranged = builder.ranged;
+		this.conditions = Collections.unmodifiableList(new ArrayList<>(builder.conditions));
+		this.filters = Collections.unmodifiableList(new ArrayList<>(builder.filters));
+		this.orderBy = Collections.unmodifiableList(new ArrayList<>(builder.orderBy));
+		this.limit = builder.limit;
+		this.fields = Collections.unmodifiableList(new ArrayList<>(builder.fields));
+	}
+
+	public boolean isPartial() {
+		return !fields.isEmpty();
+	}
+
+	public boolean isPortable() {
+		return filters.isEmpty();
+	}
+
+	String getIndex() {
+		return index;
+	}
+
+	Object getLower() {
+		return lower;
+	}
+
+	Object getUpper() {
+		return upper;
+	}
+
+	boolean isRanged() {
+		return ranged;
+	}
+
+	List<Condition> getConditions() {
+		return conditions;
+	}
+
+	List<ReqlFunction1> getFilters() {
+		return filters;
+	}
+
+	List<Order> getOrderBy() {
+		return orderBy;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	List<String> getFields() {
+		return fields;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("index", index)
+				.add("lower", lower)
+				.add("upper", upper)
+				.add("conditions", conditions)
+				.add("filters", filters.size())
+				.add("orderBy", orderBy)
+				.add("limit", limit)
+				.add("fields", fields)
+				.toString();
+	}
+
+	static final class Condition {
+		final String field;
+		final Comparison comparison;
+		final Object value;
+
+		Condition(String field, Comparison comparison, Object value) {
+			this.field = field;
+			this.comparison = comparison;
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return field + ' ' + comparison + ' ' + value;
+		}
+	}
+
+	static final class Order {
+		final String field;
+		final boolean descending;
+
+		Order(String field, boolean descending) {
+			this.field = field;
+			this.descending = descending;
+		}
+
+		@Override
+		public String toString() {
+			return descending ? '-' + field : field;
+		}
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.ulfric.dragoon.rethink;
+
+public enum ReadMode {
+
+	DEFAULT,
+	SINGLE,
+	MAJORITY,
+	OUTDATED;
+
+	public static ReadMode parse(String name) {
+		return EnumHelper.parse(ReadMode.class, name, DEFAULT);
+	}
+
+}
@@ -4,6 +4,7 @@ import java.util.Objects;
 
 import com.rethinkdb.net.Connection;
 
+@Deprecated // the pooled factory's get() behaves the same, scheduled for removal
 public class ReconnectingConnectionFactory implements ConnectionFactory {
 
 	private final Connection connection;
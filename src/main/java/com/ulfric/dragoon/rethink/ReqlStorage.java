@@ -0,0 +1,13 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.rethinkdb.gen.ast.ReqlFunction1;
+import com.ulfric.dragoon.rethink.response.Response;
+
+public interface ReqlStorage extends Storage { // runs raw ReQL, so only the rethinkdb backend offers it
+
+	Response update(Location location, ReqlFunction1 update, Consumer<Map<String, Object>> changed);
+
+}
@@ -0,0 +1,39 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.rethinkdb.RethinkDB;
+
+public class RethinkBackend implements StorageBackend {
+
+	private final RethinkDB rethinkdb;
+	private final ConnectionFactory connection;
+	private final SchemaManager schema;
+	private final Gson gson;
+	private final Logger logger;
+
+	public RethinkBackend(RethinkDB rethinkdb, ConnectionFactory connection, SchemaManager schema, Gson gson, Logger logger) {
+		Objects.requireNonNull(rethinkdb, "rethinkdb");
+		Objects.requireNonNull(connection, "connection");
+		Objects.requireNonNull(schema, "schema");
+		Objects.requireNonNull(gson, "gson");
+
+		this.rethinkdb = rethinkdb;
+		this.connection = connection;
+		this.schema = schema;
+		this.gson = gson;
+		this.logger = logger;
+	}
+
+	@Override
+	public Storage open(Location table, StoreSettings settings, Index... indexes) {
+		Objects.requireNonNull(table, "table");
+		Objects.requireNonNull(settings, "settings");
+
+		return new RethinkStorage(rethinkdb, connection, () -> schema.require(table.getDatabase(), table.getTable(), indexes),
+				table, settings, gson, logger);
+	}
+
+}
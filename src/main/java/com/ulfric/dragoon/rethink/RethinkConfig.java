@@ -12,4 +12,68 @@ public interface RethinkConfig extends ConfigurationBean {
 
 	String defaultTable();
 
+	int poolMinimumSize();
+
+	int poolMaximumSize();
+
+	long poolIdleTimeout();
+
+	long poolBorrowTimeout();
+
+	long poolHealthCheckInterval();
+
+	String cachePolicy();
+
+	long cacheMaximumSize();
+
+	long cacheMaximumWeight();
+
+	long cacheExpireAfterAccess();
+
+	long cacheExpireAfterWrite();
+
+	long cacheOffHeapSize();
+
+	int cacheOffHeapSegmentSize();
+
+	String cacheOffHeapDirectory();
+
+	int batchSize();
+
+	int scanBatchSize();
+
+	String invalidation();
+
+	String eventPayload();
+
+	int eventPayloadThreshold();
+
+	long publishWindowMillis();
+
+	int publishMaximumEvents();
+
+	int dispatchThreads();
+
+	int callbackThreads();
+
+	boolean preload();
+
+	int preloadRanges();
+
+	boolean deltaWrites();
+
+	long writeBehindMillis();
+
+	int writeBehindMaximumEntries();
+
+	String durability();
+
+	String readMode();
+
+	boolean noreply();
+
+	String metrics();
+
+	String backend();
+
 }
@@ -2,21 +2,39 @@ package com.ulfric.dragoon.rethink;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.jms.MessageConsumer;
 
+import com.google.gson.Gson;
 import com.rethinkdb.RethinkDB;
-import com.rethinkdb.gen.exc.ReqlDriverError;
 import com.rethinkdb.net.Connection;
 import com.ulfric.dragoon.ObjectFactory;
+import com.ulfric.dragoon.activemq.event.EventPublisher;
 import com.ulfric.dragoon.application.Container;
 import com.ulfric.dragoon.extension.inject.Inject;
 import com.ulfric.dragoon.qualifier.GenericQualifier;
 import com.ulfric.dragoon.qualifier.Qualifier;
 import com.ulfric.dragoon.reflect.Instances;
+import com.ulfric.dragoon.rethink.cache.CachePolicy;
+import com.ulfric.dragoon.rethink.cache.CacheSettings;
+import com.ulfric.dragoon.rethink.jms.DocumentUpdateEvent;
+import com.ulfric.dragoon.rethink.jms.RethinkPublisher;
 import com.ulfric.dragoon.rethink.jms.RethinkSubscriber;
+import com.ulfric.dragoon.rethink.metrics.JmxMetrics;
+import com.ulfric.dragoon.rethink.metrics.Metrics;
 import com.ulfric.dragoon.stereotype.Stereotypes;
 import com.ulfric.dragoon.vault.Secret;
 
@@ -39,26 +57,49 @@ public class RethinkContainer extends Container { // TODO aop logging
 	@Inject(optional = true)
 	private Logger logger;
 
-	private Connection connection;
+	private PooledConnectionFactory pool;
+	private SchemaManager schema;
+	private StorageBackend backend;
+	private RethinkPublisher publisher;
+	private RethinkSubscriber subscriber;
+	private ExecutorService callbacks;
+	private Metrics metrics;
+	private final Set<Store<?>> stores = ConcurrentHashMap.newKeySet();
 
 	public RethinkContainer() {
 		addBootHook(this::registerBindings);
 		addShutdownHook(this::unregisterBindings);
 
-		addShutdownHook(this::closeConnection);
+		addShutdownHook(this::closeStores); // flushes write-behind, so still needs the publisher and the pool
+		addShutdownHook(this::closePublisher);
+		addShutdownHook(this::closeSubscriber);
+		addShutdownHook(this::closeCallbacks);
+		addShutdownHook(this::closeBackend);
+		addShutdownHook(this::closeSchema);
+		addShutdownHook(this::closePool);
+		addShutdownHook(this::closeMetrics);
 	}
 
 	private void registerBindings() {
+		bindMetrics();
 		bindRethink();
 		bindConnection();
+		bindSchema();
+		bindBackend();
 		bindRethinkSubscriber();
+		bindRethinkPublisher();
 		bindStore();
 	}
 
 	private void unregisterBindings() {
+		factory.bind(Metrics.class).toNothing();
 		factory.bind(RethinkDB.class).toNothing();
 		factory.bind(Connection.class).toNothing();
+		factory.bind(ConnectionFactory.class).toNothing();
+		factory.bind(SchemaManager.class).toNothing();
+		factory.bind(StorageBackend.class).toNothing();
 		factory.bind(RethinkSubscriber.class).toNothing();
+		factory.bind(RethinkPublisher.class).toNothing();
 		factory.bind(Store.class).toNothing();
 	}
 
@@ -72,12 +113,116 @@ public class RethinkContainer extends Container { // TODO aop logging
 					.table(database.table().replace(DEFAULT_KEY, settings.defaultTable()))
 					.build();
 
+			Preload preload = Stereotypes.getFirst(qualifier, Preload.class);
+			WriteBehind writeBehind = Stereotypes.getFirst(qualifier, WriteBehind.class);
+
+			StoreSettings storeSettings = StoreSettings.builder()
+					.cache(getCacheSettings(qualifier))
+					.batchSize(settings.batchSize())
+					.scanBatchSize(settings.scanBatchSize())
+					.invalidation(getInvalidationMode(qualifier))
+					.eventPayload(EventPayload.parse(settings.eventPayload()))
+					.eventPayloadThreshold(settings.eventPayloadThreshold())
+					.callbackExecutor(getCallbackExecutor())
+					.preload(preload == null ? settings.preload() : preload.value())
+					.preloadRanges(preload == null ? settings.preloadRanges() : preload.ranges())
+					.deltaWrites(settings.deltaWrites())
+					.writeBehind(writeBehind == null ? settings.writeBehindMillis() : writeBehind.value(), TimeUnit.MILLISECONDS)
+					.writeBehindMaximumEntries(writeBehind == null ? settings.writeBehindMaximumEntries() : writeBehind.maximumEntries())
+					.durability(database.durability() == Durability.DEFAULT ? Durability.parse(settings.durability()) : database.durability())
+					.readMode(database.readMode() == ReadMode.DEFAULT ? ReadMode.parse(settings.readMode()) : database.readMode())
+					.noreply(database.noreply() || settings.noreply())
+					.build();
+
 			Class<?> storeType = getStoreType(qualifier);
 
-			return Instances.instance(Store.class, storeType, defaultLocation);
+			Store<?> store = Instances.instance(Store.class, storeType, defaultLocation, storeSettings);
+			if (store != null) {
+				stores.add(store);
+			}
+			return store;
 		});
 	}
 
+	private void closeStores() { // stops changefeed threads and deletes off-heap files along with the write-behind flush
+		for (Store<?> store : stores) {
+			try {
+				store.close();
+			} catch (RuntimeException exception) {
+				warn("Failed to close store", exception);
+			}
+		}
+		stores.clear();
+	}
+
+	private CacheSettings getCacheSettings(Qualifier qualifier) {
+		Cache cache = Stereotypes.getFirst(qualifier, Cache.class);
+
+		if (cache == null) {
+			return CacheSettings.builder()
+					.policy(CachePolicy.parse(settings.cachePolicy()))
+					.maximumSize(settings.cacheMaximumSize())
+					.maximumWeight(settings.cacheMaximumWeight())
+					.expireAfterAccess(settings.cacheExpireAfterAccess(), TimeUnit.SECONDS)
+					.expireAfterWrite(settings.cacheExpireAfterWrite(), TimeUnit.SECONDS)
+					.offHeapSize(settings.cacheOffHeapSize())
+					.offHeapSegmentSize(settings.cacheOffHeapSegmentSize())
+					.offHeapDirectory(getOffHeapDirectory())
+					.build();
+		}
+
+		return CacheSettings.builder()
+				.policy(cache.value())
+				.maximumSize(cache.maximumSize())
+				.maximumWeight(cache.maximumWeight())
+				.expireAfterAccess(cache.expireAfterAccess(), cache.unit())
+				.expireAfterWrite(cache.expireAfterWrite(), cache.unit())
+				.offHeapSize(cache.offHeapSize())
+				.offHeapSegmentSize(settings.cacheOffHeapSegmentSize())
+				.offHeapDirectory(getOffHeapDirectory())
+				.build();
+	}
+
+	private Path getOffHeapDirectory() {
+		String directory = settings.cacheOffHeapDirectory();
+		return directory == null || directory.trim().isEmpty() ? null : Paths.get(directory.trim());
+	}
+
+	private synchronized Executor getCallbackExecutor() {
+		int callbackThreads = settings.callbackThreads();
+		if (callbackThreads <= 0) {
+			return ForkJoinPool.commonPool();
+		}
+
+		if (callbacks == null) {
+			AtomicInteger threads = new AtomicInteger();
+			callbacks = Executors.newFixedThreadPool(callbackThreads, runnable -> {
+				Thread thread = new Thread(runnable, "rethinkdb-callbacks-" + threads.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		return callbacks;
+	}
+
+	private synchronized void closeCallbacks() {
+		if (callbacks != null) {
+			callbacks.shutdown();
+			callbacks = null;
+		}
+	}
+
+	private InvalidationMode getInvalidationMode(Qualifier qualifier) {
+		Invalidation invalidation = Stereotypes.getFirst(qualifier, Invalidation.class);
+
+		if (invalidation == null) {
+			return InvalidationMode.parse(settings.invalidation());
+		}
+
+		return invalidation.value();
+	}
+
 	private Class<?> getStoreType(Qualifier qualifier) {
 		if (qualifier instanceof GenericQualifier) {
 			Type genericType = ((GenericQualifier) qualifier).getGenericType();
@@ -91,6 +236,26 @@ public class RethinkContainer extends Container { // TODO aop logging
 		return qualifier.getType();
 	}
 
+	private void bindMetrics() {
+		factory.bind(Metrics.class).toLazy(parameters -> getMetrics());
+	}
+
+	private synchronized Metrics getMetrics() {
+		if (metrics == null) {
+			String type = settings.metrics();
+			metrics = type != null && type.trim().equalsIgnoreCase("jmx") ? new JmxMetrics(logger) : Metrics.noop();
+		}
+
+		return metrics;
+	}
+
+	private synchronized void closeMetrics() {
+		if (metrics instanceof JmxMetrics) {
+			((JmxMetrics) metrics).close();
+		}
+		metrics = null;
+	}
+
 	private void bindRethink() {
 		factory.bind(RethinkDB.class).toFunction(ignore -> {
 			return RethinkDB.r;
@@ -98,51 +263,140 @@ public class RethinkContainer extends Container { // TODO aop logging
 	}
 
 	private void bindConnection() {
-		factory.bind(Connection.class).toLazy(parameters -> {
-			log("Connecting to rethinkdb at %s with timeout of %d seconds", settings.host(), settings.timeout());
+		factory.bind(Connection.class).toLazy(parameters -> { // deprecated, inject ConnectionFactory and borrow instead
+			ConnectionFactory connections = factory.request(ConnectionFactory.class);
+			return connections == null ? null : connections.get(); // the pool owns and closes it
+		});
 
-			RethinkDB rethink = factory.request(RethinkDB.class);
-			try {
-				connection = rethink.connection()
-						.hostname(settings.host()) // TODO configurable - localhost for local proxy (or just hosted locally
-						.user(username, password)
-						.db(settings.defaultDatabase())
-						.timeout(settings.timeout())
-						.connect(); // TODO retries
-			} catch (ReqlDriverError exception) {
-				error("Failed to connect to rethinkdb", exception);
+		factory.bind(ConnectionFactory.class).toLazy(parameters -> {
+			int maximumSize = settings.poolMaximumSize();
+			if (maximumSize <= 0) {
+				maximumSize = Math.max(2, Runtime.getRuntime().availableProcessors());
 			}
+			int minimumSize = Math.min(Math.max(0, settings.poolMinimumSize()), maximumSize);
+
+			log("Pooling between %d and %d rethinkdb connections", minimumSize, maximumSize);
+
+			pool = PooledConnectionFactory.builder()
+					.connector(this::connect)
+					.minimumSize(minimumSize)
+					.maximumSize(maximumSize)
+					.idleTimeout(settings.poolIdleTimeout(), TimeUnit.SECONDS)
+					.borrowTimeout(settings.poolBorrowTimeout(), TimeUnit.SECONDS)
+					.healthCheckInterval(settings.poolHealthCheckInterval(), TimeUnit.SECONDS)
+					.logger(logger)
+					.metrics(getMetrics())
+					.build();
 
-			return connection;
+			return pool;
 		});
+	}
 
-		factory.bind(ConnectionFactory.class).toLazy(parameters -> {
-			return new ReconnectingConnectionFactory(factory.request(Connection.class));
+	private Connection connect() {
+		RethinkDB rethink = factory.request(RethinkDB.class);
+		return rethink.connection()
+				.hostname(settings.host()) // TODO configurable - localhost for local proxy (or just hosted locally
+				.user(username, password)
+				.db(settings.defaultDatabase())
+				.timeout(settings.timeout())
+				.connect(); // TODO retries
+	}
+
+	private void bindSchema() {
+		factory.bind(SchemaManager.class).toLazy(parameters -> {
+			schema = new SchemaManager(factory.request(RethinkDB.class), factory.request(ConnectionFactory.class), logger);
+			return schema;
 		});
 	}
 
+	private void bindBackend() {
+		factory.bind(StorageBackend.class).toLazy(parameters -> {
+			BackendType type = BackendType.parse(settings.backend());
+			log("Storing documents in the %s backend", type.name().toLowerCase(Locale.ROOT));
+
+			if (type == BackendType.MEMORY) {
+				backend = new MemoryBackend();
+			} else {
+				backend = new RethinkBackend(factory.request(RethinkDB.class), factory.request(ConnectionFactory.class),
+						factory.request(SchemaManager.class), factory.request(Gson.class), logger);
+			}
+
+			return backend;
+		});
+	}
+
+	private void closeBackend() {
+		if (backend != null) {
+			backend.close();
+			backend = null;
+		}
+	}
+
+	private void closeSchema() {
+		if (schema != null) {
+			schema.close();
+			schema = null;
+		}
+	}
+
 	private void bindRethinkSubscriber() {
 		factory.bind(RethinkSubscriber.class).toLazy(parameters -> {
 			MessageConsumer backing = factory.request(MessageConsumer.class, parameters);
-			return new RethinkSubscriber(backing);
+
+			int dispatchThreads = settings.dispatchThreads();
+			if (dispatchThreads <= 0) {
+				dispatchThreads = Runtime.getRuntime().availableProcessors();
+			}
+
+			subscriber = new RethinkSubscriber(backing, dispatchThreads, logger, getMetrics());
+			return subscriber;
 		});
 	}
 
-	private void closeConnection() {
-		if (connection != null && connection.isOpen()) {
-			connection.close();
+	private void closeSubscriber() {
+		if (subscriber != null) {
+			subscriber.stopDispatching();
+			subscriber = null;
 		}
 	}
 
-	private void log(String message, Object... format) {
+	@SuppressWarnings("unchecked")
+	private void bindRethinkPublisher() {
+		factory.bind(RethinkPublisher.class).toLazy(parameters -> {
+			EventPublisher<DocumentUpdateEvent> backing = factory.request(EventPublisher.class, parameters);
+			if (backing == null) {
+				return null;
+			}
+
+			publisher = new RethinkPublisher(backing, settings.publishWindowMillis(), settings.publishMaximumEvents(),
+					getMetrics());
+			return publisher;
+		});
+	}
+
+	private void closePublisher() {
+		if (publisher != null) {
+			publisher.close();
+			publisher = null;
+		}
+	}
+
+	private void closePool() {
+		if (pool != null) {
+			pool.close();
+			pool = null;
+		}
+	}
+
+	private void warn(String message, Throwable thrown) {
 		if (logger != null) {
-			logger.info(String.format(message, format));
+			logger.log(Level.WARNING, message, thrown);
 		}
 	}
 
-	private void error(String message, Throwable thrown) {
+	private void log(String message, Object... format) {
 		if (logger != null) {
-			logger.log(Level.SEVERE, message, thrown);
+			logger.info(String.format(message, format));
 		}
 	}
 
@@ -0,0 +1,408 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.rethinkdb.RethinkDB;
+import com.rethinkdb.ast.ReqlAst;
+import com.rethinkdb.gen.ast.Between;
+import com.rethinkdb.gen.ast.ReqlExpr;
+import com.rethinkdb.gen.ast.ReqlFunction1;
+import com.rethinkdb.gen.ast.Table;
+import com.rethinkdb.model.MapObject;
+import com.rethinkdb.model.OptArgs;
+import com.rethinkdb.net.Cursor;
+import com.ulfric.dragoon.rethink.codec.DocumentCodec;
+import com.ulfric.dragoon.rethink.response.Response;
+import com.ulfric.dragoon.rethink.response.ResponseHelper;
+
+final class RethinkStorage implements ReqlStorage {
+
+	private final RethinkDB rethinkdb;
+	private final ConnectionFactory connection;
+	private final Supplier<CompletableFuture<Void>> schema;
+	private volatile CompletableFuture<Void> ready;
+	private final Location defaultTable;
+	private final StoreSettings settings;
+	private final DocumentCodec<Response> responses;
+	private final Logger logger;
+	private final Map<String, Map<String, Table>> tables = new ConcurrentHashMap<>(1);
+
+	RethinkStorage(RethinkDB rethinkdb, ConnectionFactory connection, Supplier<CompletableFuture<Void>> schema,
+			Location defaultTable, StoreSettings settings, Gson gson, Logger logger) {
+		this.rethinkdb = rethinkdb;
+		this.connection = connection;
+		this.schema = schema;
+		this.ready = schema.get();
+		this.defaultTable = defaultTable;
+		this.settings = settings;
+		this.responses = new DocumentCodec<>(gson, Response.class);
+		this.logger = logger;
+	}
+
+	@Override
+	public Map<String, Object> get(Location location) {
+		return query(table(location).get(location.getKey()));
+	}
+
+	@Override
+	public void getAll(Location table, Object[] ids, Consumer<Map<String, Object>> consumer) {
+		each(table(table).getAll(ids), consumer);
+	}
+
+	@Override
+	public void getAllByIndex(Location table, String index, Object[] values, Consumer<Map<String, Object>> consumer) {
+		each(table(table).getAll(values).optArg("index", index), consumer);
+	}
+
+	@Override
+	public void between(Location table, String index, Object lower, Object upper, Consumer<Map<String, Object>> consumer) {
+		Between between = table(table).between(lower == null ? rethinkdb.minval() : lower, upper == null ? rethinkdb.maxval() : upper);
+		each(index == null ? between : between.optArg("index", index), consumer);
+	}
+
+	@Override
+	public Stream<Map<String, Object>> scan(Location table, int batchSize) {
+		return stream(table(table), batchSize);
+	}
+
+	@Override
+	public void find(Location table, Query query, Consumer<Map<String, Object>> consumer) {
+		each(compile(table(table), query), consumer);
+	}
+
+	@Override
+	public long count(Location table, Query query) {
+		Number count = query(compile(table(table), query).count());
+		return count == null ? 0L : count.longValue();
+	}
+
+	private ReqlExpr compile(Table table, Query query) {
+		ReqlExpr compiled = table;
+
+		if (query.isRanged()) {
+			Object lower = query.getLower();
+			Object upper = query.getUpper();
+			compiled = table.between(lower == null ? rethinkdb.minval() : lower, upper == null ? rethinkdb.maxval() : upper)
+					.optArg("index", query.getIndex());
+		}
+
+		for (Query.Condition condition : query.getConditions()) {
+			compiled = compiled.filter(row -> condition.comparison.apply(row.g(condition.field), condition.value));
+		}
+
+		for (ReqlFunction1 filter : query.getFilters()) {
+			compiled = compiled.filter(filter);
+		}
+
+		if (!query.getOrderBy().isEmpty()) {
+			compiled = compiled.orderBy(query.getOrderBy().stream()
+					.map(order -> order.descending ? rethinkdb.desc(order.field) : order.field)
+					.toArray());
+		}
+
+		if (query.getLimit() >= 0) {
+			compiled = compiled.limit(query.getLimit());
+		}
+
+		if (query.isPartial()) {
+			List<Object> plucked = new ArrayList<>(query.getFields().size() + 1);
+			plucked.add("id"); // keeps partial documents addressable
+			plucked.addAll(query.getFields());
+			compiled = compiled.pluck(plucked.toArray());
+		}
+
+		return compiled;
+	}
+
+	@Override
+	public Response replace(Location location, Map<?, ?> document) {
+		return write(table(location)
+				.get(location.getKey())
+				.replace(document), assumed -> assumed.setReplaced(1));
+	}
+
+	@Override
+	public Response patch(Location location, JsonObject patch) {
+		return response(query(table(location)
+				.get(location.getKey())
+				.update(literals(patch)), writeOptions())); // always waits for the reply, callers fall back to replace when it was skipped
+	}
+
+	private MapObject literals(JsonObject patch) {
+		MapObject update = new MapObject();
+
+		for (Map.Entry<String, JsonElement> entry : patch.entrySet()) {
+			JsonElement value = entry.getValue();
+
+			if (value.isJsonNull()) {
+				update.put(entry.getKey(), rethinkdb.literal()); // removes the field
+			} else if (value.isJsonObject()) {
+				update.put(entry.getKey(), literals(value.getAsJsonObject()));
+			} else {
+				update.put(entry.getKey(), responses.fromTree(value));
+			}
+		}
+
+		return update;
+	}
+
+	@Override
+	public Response update(Location location, Update update, Consumer<Map<String, Object>> changed) {
+		return update(location, compile(update), changed);
+	}
+
+	private ReqlFunction1 compile(Update update) {
+		return row -> {
+			MapObject changes = new MapObject();
+			for (Update.Change change : update.getChanges()) {
+				changes.put(change.field, compile(row, change));
+			}
+
+			if (!update.isVersioned()) {
+				return changes;
+			}
+
+			String versionField = update.getVersionField();
+			long expected = update.getExpectedVersion();
+			return rethinkdb.branch(row.g(versionField).default_(0).eq(expected),
+					rethinkdb.expr(changes).merge(rethinkdb.hashMap(versionField, expected + 1)),
+					rethinkdb.error(update.versionMismatch()));
+		};
+	}
+
+	private Object compile(ReqlExpr row, Update.Change change) {
+		switch (change.operation) {
+			case SET:
+				return change.value;
+			case INCREMENT:
+				return row.g(change.field).default_(0).add(change.value);
+			case APPEND:
+				return row.g(change.field).default_(rethinkdb.array()).append(change.value);
+			default:
+				throw new IllegalArgumentException("Unknown operation " + change.operation);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Response update(Location location, ReqlFunction1 update, Consumer<Map<String, Object>> changed) {
+		Object result = query(table(location)
+				.get(location.getKey())
+				.update(update)
+				.optArg("return_changes", true), writeOptions()); // always waits for the reply, it carries the new value
+
+		Response response = response(result);
+		if (ResponseHelper.changedData(response)) {
+			List<Map<String, Object>> changes = (List<Map<String, Object>>) ((Map<String, Object>) result).get("changes");
+			Map<String, Object> document = changes == null || changes.isEmpty() ? null
+					: (Map<String, Object>) changes.get(0).get("new_val");
+
+			if (document != null) {
+				changed.accept(document);
+			}
+		}
+
+		return response;
+	}
+
+	@Override
+	public Response insertAll(Location table, List<? extends Map<?, ?>> documents) {
+		return write(table(table)
+				.insert(documents)
+				.optArg("conflict", "replace"), assumed -> assumed.setReplaced(documents.size()));
+	}
+
+	@Override
+	public Response delete(Location location) {
+		return write(table(location)
+				.get(location.getKey())
+				.delete(), assumed -> assumed.setDeleted(1));
+	}
+
+	@Override
+	public Response deleteAll(Location table, Object[] ids) {
+		return write(table(table)
+				.getAll(ids)
+				.delete(), assumed -> assumed.setDeleted(ids.length));
+	}
+
+	@Override
+	public Feed follow(Consumer<Map<String, Object>> changes, Runnable opened) {
+		Changefeed changefeed = new Changefeed(defaultTable.getDatabase() + '.' + defaultTable.getTable(),
+				table(defaultTable).changes().optArg("include_initial", false),
+				this::awaitSchema, connection, changes, opened, logger);
+		changefeed.start();
+		return changefeed;
+	}
+
+	@Override
+	public int getParallelism() {
+		return Math.max(1, connection.getMaximumSize() / 2); // leave the pool room for traffic
+	}
+
+	private void awaitSchema() {
+		CompletableFuture<Void> ready = this.ready;
+		if (ready.isCompletedExceptionally()) {
+			ready = schema.get(); // the schema manager forgets failures, so this retries
+			this.ready = ready;
+		}
+
+		try {
+			ready.join();
+		} catch (CompletionException exception) {
+			Throwable cause = exception.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw exception;
+		}
+	}
+
+	private ConnectionFactory.Lease borrow() {
+		awaitSchema();
+		return connection.borrow();
+	}
+
+	private <R> R query(ReqlAst query) {
+		return query(query, readOptions());
+	}
+
+	private <R> R query(ReqlAst query, OptArgs options) {
+		try (ConnectionFactory.Lease lease = borrow()) {
+			return query.run(lease.connection(), options);
+		}
+	}
+
+	private Response write(ReqlAst query, Consumer<Response> assumed) {
+		if (!settings.isNoreply()) {
+			return response(query(query, writeOptions()));
+		}
+
+		try (ConnectionFactory.Lease lease = borrow()) {
+			query.runNoReply(lease.connection(), writeOptions());
+		}
+
+		Response response = new Response(); // nothing comes back, so report what the write would have done
+		assumed.accept(response);
+		return response;
+	}
+
+	private OptArgs readOptions() {
+		OptArgs options = new OptArgs();
+		if (settings.getReadMode() != ReadMode.DEFAULT) {
+			options.with("read_mode", settings.getReadMode().name().toLowerCase(Locale.ROOT));
+		}
+		return options;
+	}
+
+	private OptArgs writeOptions() {
+		OptArgs options = new OptArgs();
+		if (settings.getDurability() != Durability.DEFAULT) {
+			options.with("durability", settings.getDurability().name().toLowerCase(Locale.ROOT));
+		}
+		return options;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void each(ReqlAst query, Consumer<Map<String, Object>> consumer) {
+		try (ConnectionFactory.Lease lease = borrow()) {
+			Object result = query.run(lease.connection(), readOptions());
+
+			if (result instanceof Cursor) {
+				Cursor<Map<String, Object>> cursor = (Cursor<Map<String, Object>>) result;
+				try {
+					cursor.forEach(consumer);
+				} finally {
+					cursor.close();
+				}
+			} else if (result instanceof List) {
+				((List<Map<String, Object>>) result).forEach(consumer);
+			} else if (result instanceof Map) {
+				consumer.accept((Map<String, Object>) result);
+			}
+		}
+	}
+
+	private Stream<Map<String, Object>> stream(Table table, int batchSize) { // one query per page, no connection is held between pages
+		Iterator<Map<String, Object>> iterator = new Iterator<Map<String, Object>>() {
+			private List<Map<String, Object>> page = new ArrayList<>(0);
+			private int next;
+			private Object last;
+			private boolean exhausted;
+
+			@Override
+			public boolean hasNext() {
+				if (next < page.size()) {
+					return true;
+				}
+
+				if (exhausted) {
+					return false;
+				}
+
+				page = new ArrayList<>(batchSize);
+				next = 0;
+				each(table.between(last == null ? rethinkdb.minval() : last, rethinkdb.maxval())
+						.optArg("left_bound", last == null ? "closed" : "open")
+						.orderBy().optArg("index", "id")
+						.limit(batchSize), page::add);
+
+				exhausted = page.size() < batchSize;
+				if (!page.isEmpty()) {
+					last = page.get(page.size() - 1).get("id");
+				}
+				return !page.isEmpty();
+			}
+
+			@Override
+			public Map<String, Object> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				return page.get(next++);
+			}
+		};
+
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+	}
+
+	private Table table(Location location) {
+		String database = location.getDatabase();
+		Map<String, Table> byName = tables.get(database);
+		if (byName != null) {
+			Table table = byName.get(location.getTable());
+			if (table != null) { // computeIfAbsent locks even on a hit
+				return table;
+			}
+		} else {
+			byName = tables.computeIfAbsent(database, ignore -> new ConcurrentHashMap<>(1));
+		}
+
+		return byName.computeIfAbsent(location.getTable(), table -> rethinkdb.db(database).table(table));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Response response(Object map) {
+		return map instanceof Map ? responses.decode((Map<String, Object>) map) : null;
+	}
+
+}
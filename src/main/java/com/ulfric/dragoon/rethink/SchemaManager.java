@@ -0,0 +1,222 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import com.rethinkdb.RethinkDB;
+import com.rethinkdb.ast.ReqlAst;
+import com.rethinkdb.gen.ast.Table;
+import com.rethinkdb.gen.exc.ReqlOpFailedError;
+
+public class SchemaManager implements AutoCloseable {
+
+	private final RethinkDB rethinkdb;
+	private final ConnectionFactory connection;
+	private final Logger logger;
+	private final ExecutorService executor;
+	private final Map<String, CompletableFuture<Void>> databases = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<Void>> tables = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<Void>> indexes = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<Set<String>>> tableLists = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<Set<String>>> indexLists = new ConcurrentHashMap<>();
+	private CompletableFuture<Set<String>> databaseList;
+
+	public SchemaManager(RethinkDB rethinkdb, ConnectionFactory connection, Logger logger) {
+		Objects.requireNonNull(rethinkdb, "rethinkdb");
+		Objects.requireNonNull(connection, "connection");
+
+		this.rethinkdb = rethinkdb;
+		this.connection = connection;
+		this.logger = logger;
+
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "rethinkdb-schema-" + threads.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public CompletableFuture<Void> require(String database, String table, Index... indexes) {
+		Objects.requireNonNull(database, "database");
+		Objects.requireNonNull(table, "table");
+
+		if (indexes.length == 0) {
+			return requireTable(database, table);
+		}
+
+		return CompletableFuture.allOf(Arrays.stream(indexes)
+				.map(index -> requireIndex(database, table, index))
+				.toArray(CompletableFuture[]::new));
+	}
+
+	private CompletableFuture<Void> requireIndex(String database, String table, Index index) {
+		return cached(indexes, database + '.' + table + '.' + index.value(), () -> requireTable(database, table)
+				.thenCompose(nothing -> indexList(database, table))
+				.thenApplyAsync(existing -> {
+					if (!existing.contains(index.value())) {
+						createIndex(database, table, index);
+					}
+					return null;
+				}, executor));
+	}
+
+	private CompletableFuture<Void> requireTable(String database, String table) {
+		return cached(tables, database + '.' + table, () -> requireDatabase(database)
+				.thenCompose(nothing -> tableList(database))
+				.thenApplyAsync(existing -> {
+					if (!existing.contains(table)) {
+						createTable(database, table);
+						indexLists.putIfAbsent(database + '.' + table, CompletableFuture.completedFuture(Collections.emptySet()));
+					}
+					return null;
+				}, executor));
+	}
+
+	private CompletableFuture<Void> requireDatabase(String database) {
+		return cached(databases, database, () -> databaseList()
+				.thenApplyAsync(existing -> {
+					if (!existing.contains(database)) {
+						createDatabase(database);
+						tableLists.putIfAbsent(database, CompletableFuture.completedFuture(Collections.emptySet()));
+					}
+					return null;
+				}, executor));
+	}
+
+	private synchronized CompletableFuture<Set<String>> databaseList() {
+		if (databaseList == null) {
+			CompletableFuture<Set<String>> created = new CompletableFuture<>();
+			databaseList = created;
+			settle(list(rethinkdb.dbList()), created, () -> clearDatabaseList(created));
+		}
+		return databaseList;
+	}
+
+	private synchronized void clearDatabaseList(CompletableFuture<Set<String>> failed) {
+		if (databaseList == failed) {
+			databaseList = null;
+		}
+	}
+
+	private CompletableFuture<Set<String>> tableList(String database) {
+		return cached(tableLists, database, () -> list(rethinkdb.db(database).tableList()));
+	}
+
+	private CompletableFuture<Set<String>> indexList(String database, String table) {
+		return cached(indexLists, database + '.' + table,
+				() -> list(rethinkdb.db(database).table(table).indexList()));
+	}
+
+	private <V> CompletableFuture<V> cached(Map<String, CompletableFuture<V>> futures, String key,
+			Supplier<CompletableFuture<V>> loader) {
+		CompletableFuture<V> existing = futures.get(key);
+		if (existing != null) {
+			return existing;
+		}
+
+		CompletableFuture<V> created = new CompletableFuture<>();
+		existing = futures.putIfAbsent(key, created);
+		if (existing != null) {
+			return existing;
+		}
+
+		CompletableFuture<V> source;
+		try {
+			source = loader.get();
+		} catch (Throwable thrown) {
+			futures.remove(key, created);
+			created.completeExceptionally(thrown);
+			return created;
+		}
+
+		settle(source, created, () -> futures.remove(key, created));
+		return created;
+	}
+
+	private <V> void settle(CompletableFuture<V> source, CompletableFuture<V> target, Runnable forget) {
+		source.whenComplete((value, error) -> {
+			if (error != null) {
+				forget.run(); // before completing, so a caller that sees the failure retries instead of getting it again
+				target.completeExceptionally(error);
+			} else {
+				target.complete(value);
+			}
+		});
+	}
+
+	private CompletableFuture<Set<String>> list(ReqlAst query) {
+		return CompletableFuture.supplyAsync(() -> {
+			List<String> names = query(query);
+			return names == null ? Collections.emptySet() : new HashSet<>(names);
+		}, executor);
+	}
+
+	private void createDatabase(String database) {
+		try {
+			query(rethinkdb.dbCreate(database));
+			info(String.format("Created database '%s'", database));
+		} catch (ReqlOpFailedError databaseAlreadyExists) { // created concurrently by another node
+			info(databaseAlreadyExists.getMessage());
+		}
+	}
+
+	private void createTable(String database, String table) {
+		try {
+			query(rethinkdb.db(database).tableCreate(table));
+			info(String.format("Created table '%s' in database '%s'", table, database));
+		} catch (ReqlOpFailedError tableAlreadyExists) { // created concurrently by another node
+			info(tableAlreadyExists.getMessage());
+		}
+
+		query(rethinkdb.db(database).table(table).wait_());
+	}
+
+	private void createIndex(String database, String table, Index index) {
+		String name = index.value();
+		String[] fields = index.fields().length == 0 ? new String[] { name } : index.fields();
+		Table term = rethinkdb.db(database).table(table);
+
+		try {
+			query(term.indexCreate(name, row -> fields.length == 1 ? row.g(fields[0])
+					: rethinkdb.array(Arrays.stream(fields).map(row::g).toArray()))
+					.optArg("multi", index.multi()));
+			info(String.format("Created index '%s' on %s in table '%s' in database '%s'",
+					name, Arrays.toString(fields), table, database));
+		} catch (ReqlOpFailedError indexAlreadyExists) { // created concurrently by another node
+			info(indexAlreadyExists.getMessage());
+		}
+
+		query(term.indexWait(name));
+	}
+
+	private <R> R query(ReqlAst query) {
+		try (ConnectionFactory.Lease lease = connection.borrow()) {
+			return query.run(lease.connection());
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private void info(String message) {
+		if (logger != null) {
+			logger.info(message);
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+final class SerialExecutor implements Executor {
+
+	private final Executor backing;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	SerialExecutor(Executor backing) {
+		Objects.requireNonNull(backing, "backing");
+
+		this.backing = backing;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		tasks.add(task);
+		schedule();
+	}
+
+	private void schedule() {
+		if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+			backing.execute(this::drain);
+		}
+	}
+
+	private void drain() {
+		try {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException exception) {
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+				}
+			}
+		} finally {
+			running.set(false);
+			schedule(); // pick up anything added after the last poll
+		}
+	}
+
+}
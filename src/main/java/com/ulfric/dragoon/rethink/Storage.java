@@ -0,0 +1,48 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonObject;
+import com.ulfric.dragoon.rethink.response.Response;
+
+public interface Storage { // documents in and out are plain maps, keyed by "id", backend specific operations live on extensions like ReqlStorage
+
+	Map<String, Object> get(Location location);
+
+	void getAll(Location table, Object[] ids, Consumer<Map<String, Object>> consumer);
+
+	void getAllByIndex(Location table, String index, Object[] values, Consumer<Map<String, Object>> consumer);
+
+	void between(Location table, String index, Object lower, Object upper, Consumer<Map<String, Object>> consumer); // null index is the primary key, null bounds are open
+
+	Stream<Map<String, Object>> scan(Location table, int batchSize);
+
+	void find(Location table, Query query, Consumer<Map<String, Object>> consumer); // only portable queries, raw ReQL filters need ReqlStorage
+
+	long count(Location table, Query query);
+
+	Response replace(Location location, Map<?, ?> document);
+
+	Response patch(Location location, JsonObject patch); // RFC 7386, skipped when the document is gone
+
+	Response update(Location location, Update update, Consumer<Map<String, Object>> changed); // changed sees the new document, a failed version check counts as an error
+
+	Response insertAll(Location table, List<? extends Map<?, ?>> documents);
+
+	Response delete(Location location);
+
+	Response deleteAll(Location table, Object[] ids);
+
+	Feed follow(Consumer<Map<String, Object>> changes, Runnable opened); // opened runs every time the feed (re)opens, changes before it were missed
+
+	int getParallelism();
+
+	interface Feed extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+}
@@ -0,0 +1,11 @@
+package com.ulfric.dragoon.rethink;
+
+public interface StorageBackend extends AutoCloseable {
+
+	Storage open(Location table, StoreSettings settings, Index... indexes);
+
+	@Override
+	default void close() {
+	}
+
+}
@@ -1,41 +1,74 @@
 package com.ulfric.dragoon.rethink;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.rethinkdb.RethinkDB;
-import com.rethinkdb.gen.ast.Json;
-import com.rethinkdb.gen.ast.Table;
-import com.rethinkdb.gen.exc.ReqlOpFailedError;
-import com.rethinkdb.net.Cursor;
+import com.rethinkdb.gen.ast.ReqlFunction1;
+import com.rethinkdb.model.MapObject;
 import com.ulfric.dragoon.ObjectFactory;
-import com.ulfric.dragoon.activemq.event.EventPublisher;
 import com.ulfric.dragoon.extension.inject.Inject;
 import com.ulfric.dragoon.extension.intercept.asynchronous.Asynchronous;
 import com.ulfric.dragoon.extension.postconstruct.PostConstruct;
 import com.ulfric.dragoon.reflect.Instances;
+import com.ulfric.dragoon.rethink.cache.CacheSettings;
+import com.ulfric.dragoon.rethink.cache.DocumentCache;
+import com.ulfric.dragoon.rethink.cache.DocumentCaches;
+import com.ulfric.dragoon.rethink.cache.OffHeapCache;
+import com.ulfric.dragoon.rethink.cache.Weighted;
+import com.ulfric.dragoon.rethink.codec.DocumentCodec;
 import com.ulfric.dragoon.rethink.jms.DocumentUpdateEvent;
+import com.ulfric.dragoon.rethink.jms.JsonMergePatch;
+import com.ulfric.dragoon.rethink.jms.NodeIdentity;
+import com.ulfric.dragoon.rethink.jms.RethinkPublisher;
 import com.ulfric.dragoon.rethink.jms.RethinkSubscriber;
 import com.ulfric.dragoon.rethink.jms.RethinkTopic;
+import com.ulfric.dragoon.rethink.metrics.Metrics;
 import com.ulfric.dragoon.rethink.response.Response;
 import com.ulfric.dragoon.rethink.response.ResponseHelper;
 
-public class Store<T extends Document> implements AutoCloseable { // TODO unit tests
+public class Store<T extends Document> implements AutoCloseable {
+
+	private static final AtomicLong STORE_IDS = new AtomicLong();
 
 	private final Class<T> type;
 	private final Location defaultLocation;
-	private final Map<Location, Consumer<DocumentUpdateEvent>> listeners = new ConcurrentHashMap<>(1);
-	private final Map<Location, UpdatableInstance<T>> cache = new ConcurrentHashMap<>(2);
+	private final StoreSettings settings;
+	private final Map<Location, InstanceListener> listeners = new ConcurrentHashMap<>(1);
+	private final DocumentCache<UpdatableInstance<T>> cache;
+	private final long id = STORE_IDS.incrementAndGet();
+	private final String origin = NodeIdentity.get() + '/' + id;
+	private final List<String> gauges = new ArrayList<>(6);
+	private final AtomicLong deltaWrites = new AtomicLong();
+	private final AtomicLong deltaBytesSaved = new AtomicLong();
+	private final Consumer<DocumentUpdateEvent> offHeapListener = event -> dropOffHeap(event.getLocation());
 
 	@Inject
 	private ObjectFactory factory;
@@ -46,106 +79,313 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 	@Inject
 	private Gson gson;
 
-	@Inject
-	private RethinkDB rethinkdb;
-
 	@Inject(optional = true)
 	@RethinkTopic
-	private EventPublisher<DocumentUpdateEvent> publisher;
+	private RethinkPublisher publisher;
 
 	@Inject(optional = true)
 	@RethinkTopic
 	private RethinkSubscriber subscriber;
 
 	@Inject
-	private ConnectionFactory connection;
+	private StorageBackend backend;
+
+	@Inject(optional = true)
+	private Metrics metrics;
+
+	private volatile Storage.Feed changefeed;
+	private volatile boolean changefeedOpened;
+	private volatile WriteBehindBuffer<T> writeBehind;
+	private volatile OffHeapCache offHeap;
+	private Storage storage;
+	private String metricPrefix;
+	private String cacheHitMetric; // names built once in prepareMetrics rather than concatenated per call
+	private String cacheMissMetric;
+	private String getHitMetric;
+	private String getMissMetric;
+	private String listAllMetric;
+	private String insertMetric;
+	private String deleteMetric;
+	private String encodeMetric;
+	private String decodeMetric;
+	private String cacheEvictionsMetric;
+	private String offHeapHitMetric;
+	private String offHeapMissMetric;
+	private String changefeedResumedMetric;
+	private DocumentCodec<T> codec;
 
 	public Store(Class<T> type, Location defaultLocation) {
+		this(type, defaultLocation, StoreSettings.defaults());
+	}
+
+	public Store(Class<T> type, Location defaultLocation, StoreSettings settings) {
 		Objects.requireNonNull(type, "type");
 		Objects.requireNonNull(defaultLocation, "defaultLocation");
+		Objects.requireNonNull(settings, "settings");
 
 		this.type = type;
 		this.defaultLocation = defaultLocation;
+		this.settings = settings;
+		this.cache = DocumentCaches.create(settings.getCache(), this::weigh, this::evicted);
 	}
 
 	@PostConstruct
 	private void prepareRethinkDb() {
-		createDatabase();
-		createTable();
+		codec = new DocumentCodec<>(gson, type);
+
+		CacheSettings cacheSettings = settings.getCache();
+		if (cacheSettings.isOffHeap()) {
+			offHeap = OffHeapCache.builder()
+					.name(defaultDatabase() + '.' + defaultTable())
+					.directory(cacheSettings.getOffHeapDirectory())
+					.maximumSize(cacheSettings.getOffHeapSize())
+					.segmentSize(cacheSettings.getOffHeapSegmentSize())
+					.evictionListener(this::leftOffHeap)
+					.build();
+		}
+
+		prepareMetrics();
+
+		storage = backend.open(defaultLocation, settings, type.getAnnotationsByType(Index.class));
+		followChanges();
+
+		if (settings.isWriteBehind()) {
+			writeBehind = new WriteBehindBuffer<>(defaultDatabase() + '.' + defaultTable(),
+					settings.getWriteBehindWindow(TimeUnit.MILLISECONDS), settings.getWriteBehindMaximumEntries(),
+					values -> CompletableFuture.completedFuture(writeAll(values)), logger); // on the flusher, so serialize sees whole drains
+		}
+
+		if (settings.isPreload()) {
+			preload();
+		}
 	}
 
-	private void createDatabase() {
+	private void preload() {
+		int ranges = settings.getPreloadRanges();
+		if (ranges <= 0) {
+			ranges = Runtime.getRuntime().availableProcessors();
+		}
+		ranges = Math.min(ranges, 256);
+
+		String name = defaultDatabase() + '.' + defaultTable();
+		info(String.format("Preloading '%s' across %d ranges", name, ranges));
+
+		long start = System.nanoTime();
+		AtomicInteger finished = new AtomicInteger();
+		AtomicLong documents = new AtomicLong();
+		int parallelism = Math.min(ranges, storage.getParallelism());
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService readers = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "rethinkdb-preload-" + name + '-' + threads.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+
 		try {
-			String database = defaultDatabase();
-
-			Object created = rethinkdb.dbCreate(defaultDatabase()).run(connection.get());
-			Response response = response(created);
-			if (ResponseHelper.changedData(response)) {
-				info(String.format("Created database '%s'", database));
-			} else {
-				info(String.format("Database '%s' already exists, but no exception was thrown", database));
+			int total = ranges;
+			List<CompletableFuture<Void>> reads = new ArrayList<>(ranges);
+			for (int range = 0; range < ranges; range++) {
+				Object lower = boundary(range, ranges);
+				Object upper = boundary(range + 1, ranges);
+
+				reads.add(CompletableFuture.supplyAsync(() -> readAll(lower, upper), readers)
+						.thenAcceptAsync(rows -> {
+							rows.parallelStream().forEach(document -> populate(defaultLocation, document));
+
+							long read = documents.addAndGet(rows.size());
+							info(String.format("Preloaded %d/%d ranges of '%s', %d documents so far",
+									finished.incrementAndGet(), total, name, read));
+						}, ForkJoinPool.commonPool()));
 			}
-		} catch (ReqlOpFailedError databaseAlreadyExists) {
-			info(databaseAlreadyExists.getMessage());
+
+			CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).join();
+
+			info(String.format("Preloaded %d documents into '%s' in %dms",
+					documents.get(), name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		} catch (CompletionException exception) {
+			alert(String.format("Failed to preload '%s' after %d documents, continuing with a partially warm cache: %s",
+					name, documents.get(), exception.getCause()));
+		} finally {
+			readers.shutdown();
 		}
 	}
 
-	private void createTable() {
-		try {
-			String database = defaultDatabase();
-			String table = defaultTable();
-
-			Object created = rethinkdb.db(database).tableCreate(table).run(connection.get());
-			Response response = response(created);
-			if (ResponseHelper.changedData(response)) {
-				info(String.format("Created table '%s' in database '%s'", table, database));
-			} else {
-				info(String.format("Table '%s' already exists in database '%s', but no exception was thrown", table, database));
+	private Object boundary(int range, int ranges) {
+		if (range == 0 || range == ranges) {
+			return null; // open ended
+		}
+
+		return String.format("%02x", range * 256 / ranges); // keys are usually hex uuids
+	}
+
+	private List<Map<String, Object>> readAll(Object lower, Object upper) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		storage.between(defaultLocation, null, lower, upper, rows::add);
+		return rows;
+	}
+
+	private void prepareMetrics() {
+		if (metrics == null) {
+			metrics = Metrics.noop();
+		}
+
+		metricPrefix = "store." + defaultDatabase() + '.' + defaultTable() + '.';
+		cacheHitMetric = metric("cache.hit");
+		cacheMissMetric = metric("cache.miss");
+		getHitMetric = metric("get.hit");
+		getMissMetric = metric("get.miss");
+		listAllMetric = metric("list-all");
+		insertMetric = metric("insert");
+		deleteMetric = metric("delete");
+		encodeMetric = metric("encode");
+		decodeMetric = metric("decode");
+		cacheEvictionsMetric = metric("cache.evictions");
+		offHeapHitMetric = metric("off-heap.hit");
+		offHeapMissMetric = metric("off-heap.miss");
+		changefeedResumedMetric = metric("changefeed.resumed");
+
+		gauge("cache.size", cache::size);
+		gauge("off-heap.size", () -> offHeap == null ? 0 : offHeap.size());
+		gauge("off-heap.mapped-bytes", () -> offHeap == null ? 0 : offHeap.getMappedBytes());
+		gauge("off-heap.evictions", () -> offHeap == null ? 0 : offHeap.getEvictionCount());
+		gauge("write-behind.queue", this::getWriteBehindQueueDepth);
+		gauge("delta.bytes-saved", this::getDeltaBytesSaved);
+	}
+
+	private String metric(String name) {
+		return metricPrefix + name;
+	}
+
+	private void gauge(String name, LongSupplier value) { // per store, counters and timings add up across stores on a table
+		String gauge = metricPrefix + id + '.' + name;
+		gauges.add(gauge);
+		metrics.gauge(gauge, value);
+	}
+
+	private <R> CompletableFuture<R> timed(String metric, Supplier<CompletableFuture<R>> operation) {
+		long start = metrics.start();
+		return operation.get().whenComplete((result, thrown) -> metrics.stop(metric, start));
+	}
+
+	private void followChanges() {
+		if (settings.getInvalidation() != InvalidationMode.CHANGEFEED) {
+			return;
+		}
+
+		changefeed = storage.follow(this::applyChange, this::refreshFollowed);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void applyChange(Map<String, Object> change) {
+		Map<String, Object> newValue = (Map<String, Object>) change.get("new_val");
+		Map<String, Object> oldValue = (Map<String, Object>) change.get("old_val");
+
+		Map<String, Object> document = newValue == null ? oldValue : newValue;
+		if (document == null) {
+			return;
+		}
+
+		Location location = defaultLocation.withKey(document.get("id"));
+		dropOffHeap(location);
+
+		UpdatableInstance<T> instance = cache.get(location);
+		if (instance == null) {
+			return;
+		}
+
+		T value = readTypeFromJson(newValue);
+		if (value != null) {
+			value.setLocation(location);
+		}
+
+		apply(location, instance, value);
+	}
+
+	private void refreshFollowed() { // isFollowed already holds before the cursor opens, so this also covers the first open
+		if (changefeedOpened) {
+			metrics.increment(changefeedResumedMetric);
+		}
+		changefeedOpened = true;
+
+		List<Location> followed = new ArrayList<>();
+		cache.forEach((location, instance) -> {
+			if (isFollowed(location)) {
+				followed.add(location);
+			}
+		});
+
+		if (followed.isEmpty()) {
+			return;
+		}
+
+		Map<Location, T> values = getAllFromDatabaseBypassingCache(followed).join();
+		for (Location location : followed) {
+			UpdatableInstance<T> instance = cache.get(location);
+			if (instance == null) {
+				continue;
 			}
-		} catch (ReqlOpFailedError tableAlreadyExists) {
-			info(tableAlreadyExists.getMessage());
+
+			apply(location, instance, values.get(location));
 		}
 	}
 
+	private boolean isFollowed(Location location) {
+		return changefeed != null
+				&& Objects.equals(location.getDatabase(), defaultDatabase())
+				&& Objects.equals(location.getTable(), defaultTable());
+	}
+
 	public T getFromLocalCache(Location location) {
 		Instance<T> instance = cache.get(location);
 		return instance == null ? null : instance.get();
 	}
 
 	public CompletableFuture<Instance<T>> get(Location key) {
+		long start = metrics.start();
 		Location location = location(key);
 
 		UpdatableInstance<T> instance = instance(location);
 
-		boolean isAbsent;
-		instance.lockRead();
-		try {
-			isAbsent = instance.isAbsent();
-		} finally {
-			instance.unlockRead();
-		}
-
-		if (isAbsent) {
-			instance.lockWrite();
-
-			isAbsent = instance.isAbsent();
-			if (isAbsent) {
-				return getFromDatabaseBypassingCache(location)
-						.thenAccept(value -> { // TODO error handling
-							if (value == null) {
-								value = Instances.instance(type); // TODO is this what we really want?
-								value.setLocation(location);
-							}
-							instance.update(value);
-							instance.unlockWrite();
-						})
-						.thenApply(ignore -> instance);
-			}
+		CompletableFuture<Instance<T>> loaded = instance.getLoaded();
+		if (loaded != null) {
+			metrics.increment(cacheHitMetric);
+			metrics.stop(getHitMetric, start);
+			return loaded;
+		}
 
-			instance.unlockWrite();
+		metrics.increment(cacheMissMetric);
+		long version = instance.getVersion();
+		return instance.load(() -> load(location),
+				value -> {
+					fill(location, instance, version, value);
+					metrics.stop(getMissMetric, start);
+				});
+	}
+
+	private CompletableFuture<T> load(Location location) {
+		T value = takeOffHeap(location);
+		return value == null ? getFromDatabaseBypassingCache(location) : CompletableFuture.completedFuture(value);
+	}
+
+	private void fill(Location location, UpdatableInstance<T> instance, long version, T value) {
+		JsonObject snapshot;
+		if (value == null) {
+			value = placeholder(location);
+			snapshot = null; // nothing is persisted, the first write has to be a full replace
+		} else {
+			snapshot = snapshot(location, value);
+		}
+
+		if (instance.updateIfUnchanged(version, value, snapshot)
+				|| instance.updateIfAbsent(placeholder(location))) { // a delete landed mid-load, callers still get a value to write to
+			cache.reweigh(location);
 		}
+	}
 
-		return CompletableFuture.completedFuture(instance);
+	private T placeholder(Location location) {
+		T value = Instances.instance(type); // TODO is this what we really want?
+		value.setLocation(location);
+		return value;
 	}
 
 	@Asynchronous
@@ -158,38 +398,177 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 		return CompletableFuture.completedFuture(value);
 	}
 
-	@Asynchronous
-	public CompletableFuture<List<Instance<T>>> listAllFromDatabase() { // TODO cleanup
-		Cursor<Map<String, Object>> table = databaseTable(defaultLocation)
-			.run(connection.get());
+	public CompletableFuture<Map<Location, Instance<T>>> getAll(Collection<Location> keys) {
+		Objects.requireNonNull(keys, "keys");
+
+		Map<Location, Instance<T>> instances = new LinkedHashMap<>(keys.size());
+		Map<Location, UpdatableInstance<T>> misses = new LinkedHashMap<>();
+		Map<Location, Long> versions = new HashMap<>();
+
+		for (Location key : keys) {
+			Location location = location(key);
+			UpdatableInstance<T> instance = instance(location);
+			instances.put(location, instance);
 
-		List<Instance<T>> instances = new ArrayList<>(table.bufferedSize()); // TODO make sure bufferedSize returns what I think it does
+			if (instance.getLoaded() == null) {
+				versions.put(location, instance.getVersion());
+				misses.put(location, instance);
+			}
+		}
 
-		Location.Builder builder = defaultLocation.toBuilder();
+		if (offHeap != null) {
+			Iterator<Map.Entry<Location, UpdatableInstance<T>>> iterator = misses.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<Location, UpdatableInstance<T>> miss = iterator.next();
+				T value = takeOffHeap(miss.getKey());
+				if (value != null) {
+					fill(miss.getKey(), miss.getValue(), versions.get(miss.getKey()), value);
+					iterator.remove();
+				}
+			}
+		}
 
-		for (Map<String, Object> document : table) {
-			Location location = builder.key(document.get("id")).build();
+		if (misses.isEmpty()) {
+			return CompletableFuture.completedFuture(instances);
+		}
+
+		return getAllFromDatabaseBypassingCache(misses.keySet())
+				.thenApply(values -> {
+					misses.forEach((location, instance) -> fill(location, instance, versions.get(location), values.get(location)));
+
+					return instances;
+				});
+	}
+
+	@Asynchronous
+	public CompletableFuture<Map<Location, T>> getAllFromDatabaseBypassingCache(Collection<Location> keys) {
+		Map<Location, T> values = new HashMap<>(keys.size());
+		byTable(keys, this::location).forEach((table, locations) -> {
+			Object[] ids = locations.stream().map(this::location).map(Location::getKey).toArray();
+			storage.getAll(table, ids, document -> {
+				Location location = table.withKey(document.get("id"));
 
-			UpdatableInstance<T> instance = instance(location);
-			instance.lockWrite();
-			try {
 				T value = readTypeFromJson(document);
-				instance.update(value);
-			} finally {
-				instance.unlockWrite();
+				if (value != null) {
+					value.setLocation(location);
+					values.put(location, value);
+				}
+			});
+		});
+
+		return CompletableFuture.completedFuture(values);
+	}
+
+	@Asynchronous
+	public CompletableFuture<List<Instance<T>>> getAllByIndex(String index, Object... values) {
+		Objects.requireNonNull(index, "index");
+
+		if (values.length == 0) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+
+		return CompletableFuture.completedFuture(populateAll(each -> storage.getAllByIndex(defaultLocation, index, values, each)));
+	}
+
+	@Asynchronous
+	public CompletableFuture<List<Instance<T>>> getBetween(String index, Object lower, Object upper) {
+		Objects.requireNonNull(index, "index");
+
+		return CompletableFuture.completedFuture(populateAll(each -> storage.between(defaultLocation, index, lower, upper, each)));
+	}
+
+	private List<Instance<T>> populateAll(Consumer<Consumer<Map<String, Object>>> query) {
+		Map<Object, Instance<T>> instances = new LinkedHashMap<>(); // multi indexes can match a document more than once
+		query.accept(document -> instances.put(document.get("id"), populate(defaultLocation, document)));
+		return new ArrayList<>(instances.values());
+	}
+
+	@Asynchronous
+	public CompletableFuture<List<T>> find(Query query) {
+		Objects.requireNonNull(query, "query");
+
+		List<T> values = new ArrayList<>();
+		storage.find(defaultLocation, query, document -> {
+			T value = query.isPartial() ? detached(document) : populate(defaultLocation, document).get(); // partial documents never enter the cache
+			if (value != null) {
+				values.add(value);
 			}
+		});
+
+		return CompletableFuture.completedFuture(values);
+	}
+
+	@Asynchronous
+	public <P> CompletableFuture<List<P>> find(Query query, Class<P> projection) {
+		Objects.requireNonNull(query, "query");
+		Objects.requireNonNull(projection, "projection");
+
+		List<P> values = new ArrayList<>();
+		storage.find(defaultLocation, query, document -> values.add(codec.read(document, projection)));
+
+		return CompletableFuture.completedFuture(values);
+	}
+
+	@Asynchronous
+	public CompletableFuture<Long> count(Query query) {
+		Objects.requireNonNull(query, "query");
+
+		return CompletableFuture.completedFuture(storage.count(defaultLocation, query));
+	}
+
+	@Asynchronous
+	public CompletableFuture<List<Instance<T>>> listAllFromDatabase() {
+		long start = metrics.start();
+		try (Stream<Instance<T>> instances = storage.scan(defaultLocation, settings.getScanBatchSize())
+				.map(document -> populate(defaultLocation, document))) {
+			return CompletableFuture.completedFuture(instances.collect(Collectors.toList()));
+		} finally {
+			metrics.stop(listAllMetric, start);
+		}
+	}
+
+	public Stream<T> scan() {
+		return scan(settings.getScanBatchSize(), false);
+	}
 
-			instances.add(instance);
+	public Stream<T> scan(int batchSize, boolean populateCache) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
 		}
 
-		return CompletableFuture.completedFuture(instances);
+		return storage.scan(defaultLocation, batchSize).map(document -> {
+			if (populateCache) {
+				return populate(defaultLocation, document).get();
+			}
+
+			return detached(document);
+		}).filter(Objects::nonNull);
+	}
+
+	private T detached(Map<String, Object> document) {
+		T value = readTypeFromJson(document);
+		if (value != null) {
+			value.setLocation(defaultLocation.withKey(document.get("id")));
+		}
+		return value;
+	}
+
+	private UpdatableInstance<T> populate(Location table, Map<String, Object> document) {
+		Location location = table.withKey(document.get("id"));
+
+		T value = readTypeFromJson(document);
+		if (value != null) {
+			value.setLocation(location);
+		}
+
+		UpdatableInstance<T> instance = instance(location);
+		apply(location, instance, value);
+
+		return instance;
 	}
 
 	private T readFromDatabase(Location location) {
-		Map<String, Object> document = rethinkdb.db(location.getDatabase())
-				.table(location.getTable())
-				.get(location.getKey())
-				.run(connection.get());
+		Map<String, Object> document = storage.get(location);
 
 		T value = readTypeFromJson(document);
 		if (value != null) {
@@ -199,25 +578,135 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 	}
 
 	private T readTypeFromJson(Map<String, Object> document) {
-		if (document == null) {
-			return null;
+		long start = metrics.start();
+		try {
+			return codec.decode(document);
+		} finally {
+			metrics.stop(decodeMetric, start);
 		}
-
-		JsonElement json = gson.toJsonTree(document);
-		return gson.fromJson(json, type);
 	}
 
 	public CompletableFuture<Response> insert(T value) {
+		return timed(insertMetric, () -> save(value));
+	}
+
+	private CompletableFuture<Response> save(T value) {
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		if (writeBehind != null) {
+			Location location = location(value.getLocation());
+			CompletableFuture<Response> buffered = writeBehind.submit(location, value);
+			if (buffered != null) {
+				UpdatableInstance<T> instance = cache.get(location);
+				if (instance != null) {
+					apply(location, instance, value, instance.getSnapshot()); // the snapshot stays at what was persisted
+				}
+				return buffered;
+			}
+		}
+
 		return run(this::insert, value);
 	}
 
+	public CompletableFuture<Void> flush() {
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		return writeBehind == null ? CompletableFuture.completedFuture(null) : writeBehind.flush();
+	}
+
+	public int getWriteBehindQueueDepth() {
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		return writeBehind == null ? 0 : writeBehind.getQueueDepth();
+	}
+
+	public long getLastFlushLatency(TimeUnit unit) {
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		return writeBehind == null ? 0 : writeBehind.getLastFlushLatency(unit);
+	}
+
+	public long getMaximumFlushLatency(TimeUnit unit) {
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		return writeBehind == null ? 0 : writeBehind.getMaximumFlushLatency(unit);
+	}
+
 	private Response insert(Location location, T value) {
-		Object result = databaseTable(location)
-				.get(location.getKey())
-				.replace(json(location, value))
-				.run(connection.get());
+		if (sendsPatches()) {
+			UpdatableInstance<T> instance = cache.get(location);
+			JsonObject previous = instance == null ? null : instance.getSnapshot();
+
+			if (previous != null) {
+				Response response = update(location, previous, tree(location, value));
+				if (response != null) {
+					return response;
+				}
+			}
+		}
+
+		return storage.replace(location, document(location, value));
+	}
+
+	private Response update(Location location, JsonObject previous, JsonObject next) {
+		JsonElement patch = JsonMergePatch.diff(previous, next);
+		if (JsonMergePatch.isEmpty(patch)) {
+			Response response = new Response();
+			response.setUnchanged(1);
+			return response;
+		}
+
+		Response response = storage.patch(location, patch.getAsJsonObject());
+
+		if (response.getSkipped() != null && response.getSkipped() > 0) {
+			return null; // deleted behind our back, replace recreates it
+		}
+
+		deltaWrites.incrementAndGet();
+		if (metrics != Metrics.noop()) { // serializing the whole document is only worth it when someone reads the gauge
+			deltaBytesSaved.addAndGet(Math.max(0, gson.toJson(next).length() - gson.toJson(patch).length()));
+		}
+		return response;
+	}
+
+	public long getDeltaWrites() {
+		return deltaWrites.get();
+	}
+
+	public long getDeltaBytesSaved() {
+		return deltaBytesSaved.get();
+	}
+
+	@Asynchronous
+	public CompletableFuture<Response> update(Location key, Update update) {
+		Objects.requireNonNull(update, "update");
+
+		Location location = location(key);
+		return runUpdate(location, changed -> storage.update(location, update, changed));
+	}
+
+	@Asynchronous
+	public CompletableFuture<Response> update(Location key, ReqlFunction1 update) {
+		Objects.requireNonNull(update, "update");
 
-		return response(result);
+		if (!(storage instanceof ReqlStorage)) {
+			throw new UnsupportedOperationException("Raw ReQL updates need the rethinkdb backend, use Updates instead");
+		}
+
+		Location location = location(key);
+		return runUpdate(location, changed -> ((ReqlStorage) storage).update(location, update, changed));
+	}
+
+	private CompletableFuture<Response> runUpdate(Location location, Function<Consumer<Map<String, Object>>, Response> update) {
+		Supplier<Response> run = () -> update.apply(document -> {
+			T value = readTypeFromJson(document);
+			if (value != null) {
+				value.setLocation(location);
+			}
+			notifyActiveMq(Collections.singletonList(written(location, value, System.currentTimeMillis())));
+		});
+
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		if (writeBehind == null) {
+			return CompletableFuture.completedFuture(run.get());
+		}
+
+		return writeBehind.flushThen(run); // a buffered document flushed afterwards would overwrite the update
 	}
 
 	public CompletableFuture<Response> delete(Location location) {
@@ -227,18 +716,165 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 	}
 
 	public CompletableFuture<Response> delete(T value) {
-		return this.run(this::delete, value);
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		if (writeBehind != null) {
+			List<Location> locations = Collections.singletonList(location(value.getLocation()));
+			return timed(deleteMetric, () -> writeBehind.discard(locations, // on the flusher, an in-flight drain would write the document back
+					() -> this.run(this::delete, value).join()));
+		}
+
+		return timed(deleteMetric, () -> this.run(this::delete, value));
 	}
 
 	private Response delete(Location location, T ignore) {
 		Objects.requireNonNull(location.getKey(), "key"); // TODO is this needed? not taking chances right now
 
-		Object result = databaseTable(location)
-				.get(location.getKey())
-				.delete()
-				.run(connection.get());
+		return storage.delete(location);
+	}
+
+	@Asynchronous
+	public CompletableFuture<Response> insertAll(Collection<T> values) {
+		Objects.requireNonNull(values, "values");
+
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		if (writeBehind == null) {
+			return CompletableFuture.completedFuture(writeAll(values));
+		}
+
+		List<Location> locations = new ArrayList<>(values.size());
+		values.forEach(value -> locations.add(location(value.getLocation())));
+		return writeBehind.discard(locations, () -> writeAll(values)); // these values supersede anything still buffered
+	}
+
+	private Response writeAll(Collection<T> values) {
+		Response total = new Response();
+		byTable(values, value -> location(value.getLocation())).forEach((table, documents) -> {
+			for (List<T> chunk : chunks(documents)) {
+				List<Location> locations = new ArrayList<>(chunk.size());
+				List<MapObject> replacements = new ArrayList<>(chunk.size());
+				for (T value : chunk) {
+					Location location = location(value.getLocation());
+					locations.add(location);
+					replacements.add(document(location, value));
+				}
+
+				Response response = storage.insertAll(table, replacements);
+				ResponseHelper.add(total, response);
+
+				if (ResponseHelper.failed(response)) {
+					notifyActiveMq(insertedRows(locations, chunk));
+				} else if (ResponseHelper.changedData(response)) {
+					long timestamp = System.currentTimeMillis();
+					List<DocumentUpdateEvent> events = new ArrayList<>(chunk.size());
+					for (int index = 0; index < chunk.size(); index++) {
+						events.add(written(locations.get(index), chunk.get(index), timestamp));
+					}
+					notifyActiveMq(events);
+				}
+			}
+		});
+
+		return total;
+	}
+
+	@Asynchronous
+	public CompletableFuture<Response> deleteAll(Collection<Location> keys) {
+		Objects.requireNonNull(keys, "keys");
+
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		if (writeBehind == null) {
+			return CompletableFuture.completedFuture(removeAll(keys));
+		}
+
+		List<Location> locations = new ArrayList<>(keys.size());
+		keys.forEach(key -> locations.add(location(key)));
+		return writeBehind.discard(locations, () -> removeAll(keys));
+	}
+
+	private Response removeAll(Collection<Location> keys) {
+		Response total = new Response();
+		byTable(keys, this::location).forEach((table, locations) -> {
+			for (List<Location> chunk : chunks(locations)) {
+				Object[] ids = new Object[chunk.size()];
+				for (int index = 0; index < ids.length; index++) {
+					ids[index] = Objects.requireNonNull(location(chunk.get(index)).getKey(), "key");
+				}
+
+				Response response = storage.deleteAll(table, ids);
+				ResponseHelper.add(total, response);
+
+				if (ResponseHelper.failed(response)) {
+					notifyActiveMq(deletedRows(chunk));
+				} else if (ResponseHelper.changedData(response)) {
+					long timestamp = System.currentTimeMillis();
+					List<DocumentUpdateEvent> events = new ArrayList<>(chunk.size());
+					for (Location location : chunk) {
+						events.add(written(location(location), null, timestamp));
+					}
+					notifyActiveMq(events);
+				}
+			}
+		});
+
+		return total;
+	}
+
+	private List<DocumentUpdateEvent> insertedRows(List<Location> locations, List<T> values) { // the response only counts errors, so read back which rows took
+		Map<Location, T> stored = getAllFromDatabaseBypassingCache(locations).join();
+
+		long timestamp = System.currentTimeMillis();
+		List<DocumentUpdateEvent> events = new ArrayList<>(values.size());
+		for (int index = 0; index < values.size(); index++) {
+			Location location = locations.get(index);
+			T value = values.get(index);
+			T current = stored.get(location);
+
+			if (current != null && tree(location, current).equals(tree(location, value))) {
+				events.add(written(location, value, timestamp));
+			}
+		}
+		return events;
+	}
+
+	private List<DocumentUpdateEvent> deletedRows(List<Location> keys) {
+		List<Location> locations = new ArrayList<>(keys.size());
+		for (Location key : keys) {
+			locations.add(location(key));
+		}
+
+		Map<Location, T> stored = getAllFromDatabaseBypassingCache(locations).join();
+
+		long timestamp = System.currentTimeMillis();
+		List<DocumentUpdateEvent> events = new ArrayList<>(locations.size());
+		for (Location location : locations) {
+			if (!stored.containsKey(location)) {
+				events.add(written(location, null, timestamp));
+			}
+		}
+		return events;
+	}
+
+	private <E> Map<Location, List<E>> byTable(Collection<E> elements, Function<E, Location> locator) {
+		Map<Location, List<E>> tables = new LinkedHashMap<>();
+		for (E element : elements) {
+			Location location = locator.apply(element);
+			Location table = location.withKey((String) null);
+			tables.computeIfAbsent(table, ignore -> new ArrayList<>()).add(element);
+		}
+		return tables;
+	}
+
+	private <E> List<List<E>> chunks(List<E> elements) {
+		int size = Math.max(1, settings.getBatchSize());
+		if (elements.size() <= size) {
+			return Collections.singletonList(elements);
+		}
 
-		return response(result);
+		List<List<E>> chunks = new ArrayList<>(elements.size() / size + 1);
+		for (int start = 0; start < elements.size(); start += size) {
+			chunks.add(elements.subList(start, Math.min(elements.size(), start + size)));
+		}
+		return chunks;
 	}
 
 	@Asynchronous
@@ -247,76 +883,352 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 		Response response = run.apply(location, value);
 
 		if (ResponseHelper.changedData(response)) {
-			notifyActiveMq(location);
+			T stored = ResponseHelper.deletedData(response) ? null : value;
+			notifyActiveMq(Collections.singletonList(written(location, stored, System.currentTimeMillis())));
 		}
 
 		return CompletableFuture.completedFuture(response);
 	}
 
-	private Table databaseTable(Location location) {
-		return rethinkdb.db(location.getDatabase()).table(location.getTable());
+	private MapObject document(Location location, T value) {
+		long start = metrics.start();
+		try {
+			return codec.encode(value, location.getKey());
+		} finally {
+			metrics.stop(encodeMetric, start);
+		}
 	}
 
-	private Json json(Location location, T value) {
+	private JsonObject tree(Location location, T value) {
+		JsonElement element = gson.toJsonTree(value, type);
+		JsonObject json = element != null && element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
+
 		String key = location.getKey();
-		if (key == null) {
-			return rethinkdb.json(gson.toJson(value, type));
+		if (key != null) {
+			json.addProperty("id", key);
+		}
+		return json;
+	}
+
+	private JsonObject snapshot(Location location, T value) {
+		if (value == null || !keepsSnapshots()) {
+			return null;
+		}
+
+		return tree(location, value);
+	}
+
+	private boolean sendsPatches() {
+		return settings.isDeltaWrites() && !settings.isNoreply(); // a noreply patch can't report that it was skipped, replace always lands
+	}
+
+	private boolean keepsSnapshots() {
+		return sendsPatches() || settings.getEventPayload() == EventPayload.PATCH;
+	}
+
+	private DocumentUpdateEvent written(Location location, T value, long timestamp) {
+		dropOffHeap(location);
+
+		UpdatableInstance<T> instance = cache.get(location);
+		JsonObject previous = instance == null ? null : instance.getSnapshot();
+
+		boolean publishing = publisher != null && (settings.getEventPayload() != EventPayload.NONE || settings.isNoreply());
+		boolean snapshots = keepsSnapshots();
+		JsonObject tree = value != null && (publishing || snapshots) ? tree(location, value) : null;
+
+		if (instance != null) {
+			JsonObject snapshot = snapshots ? tree : null;
+			WriteBehindBuffer<T> writeBehind = this.writeBehind;
+			if (writeBehind == null) {
+				apply(location, instance, value, snapshot);
+			} else if (!writeBehind.unlessPending(location, () -> apply(location, instance, value, snapshot))) {
+				instance.persisted(snapshot); // a newer value was submitted during the flush and is already applied
+			}
 		}
 
-		JsonElement jsonElement = gson.fromJson(gson.toJson(value, type), JsonElement.class);
-		if (jsonElement == null) {
-			jsonElement = new JsonObject();
+		InstanceListener listener = listeners.get(location);
+		if (listener != null) {
+			listener.written(timestamp);
 		}
-		JsonObject json = jsonElement.getAsJsonObject();
-		json.addProperty("id", key);
-		return rethinkdb.json(gson.toJson(json));
+
+		DocumentUpdateEvent event = event(location, timestamp);
+		if (value == null) {
+			event.setDeleted(true);
+		} else if (publishing) {
+			attachPayload(event, tree, previous);
+		}
+		return event;
 	}
 
-	private Response response(Object map) {
-		return gson.fromJson(gson.toJson(map), Response.class);
+	private void attachPayload(DocumentUpdateEvent event, JsonObject tree, JsonObject previous) {
+		if (previous != null) {
+			event.setBase(JsonMergePatch.hash(previous)); // receivers holding anything else re-read instead
+		}
+
+		if (settings.isNoreply()) {
+			event.setValue(gson.toJson(tree)); // the write may not have landed yet, a receiver re-reading could cache the old value
+			return;
+		}
+
+		int threshold = settings.getEventPayloadThreshold();
+
+		if (settings.getEventPayload() == EventPayload.PATCH && previous != null) {
+			String patch = gson.toJson(JsonMergePatch.diff(previous, tree));
+			if (patch.length() <= threshold) {
+				event.setPatch(patch);
+				return;
+			}
+		}
+
+		String value = gson.toJson(tree);
+		if (value.length() <= threshold) {
+			event.setValue(value);
+		}
 	}
 
-	private void notifyActiveMq(Location location) {
-		if (publisher == null) {
+	private void notifyActiveMq(List<DocumentUpdateEvent> events) {
+		if (publisher == null || events.isEmpty()) {
 			return; // TODO log warning?
 		}
 
+		if (events.size() == 1) {
+			publisher.send(events.get(0));
+			return;
+		}
+
 		DocumentUpdateEvent event = new DocumentUpdateEvent();
-		event.setTimestamp(System.currentTimeMillis());
-		event.setLocation(location);
+		event.setTimestamp(events.get(0).getTimestamp());
+		event.setOrigin(origin);
+		event.setBatch(events);
 
 		publisher.send(event);
 	}
 
+	private DocumentUpdateEvent event(Location location, long timestamp) {
+		DocumentUpdateEvent event = new DocumentUpdateEvent();
+		event.setTimestamp(timestamp);
+		event.setLocation(location);
+		event.setOrigin(origin);
+		return event;
+	}
+
+	private void apply(Location location, UpdatableInstance<T> instance, T value) {
+		apply(location, instance, value, snapshot(location, value));
+	}
+
+	private void apply(Location location, UpdatableInstance<T> instance, T value, JsonObject snapshot) {
+		instance.update(value, snapshot);
+		cache.reweigh(location);
+	}
+
 	private UpdatableInstance<T> instance(Location location) {
+		UpdatableInstance<T> cached = cache.get(location); // computeIfAbsent locks even on a hit
+		if (cached != null) {
+			return cached;
+		}
+
 		return cache.computeIfAbsent(location, key -> {
-				UpdatableInstance<T> instance = new UpdatableInstance<>();
+				UpdatableInstance<T> instance = new UpdatableInstance<>(settings.getCallbackExecutor());
 				addListener(key, instance);
 				return instance;
 			});
 	}
 
 	private void addListener(Location location, UpdatableInstance<T> instance) {
-		Consumer<DocumentUpdateEvent> oldListener = listeners.put(location, event -> {
-			T value = readFromDatabase(location);
-			instance.lockWrite();
-			try {
-				instance.update(value);
-			} finally {
-				instance.unlockWrite();
+		InstanceListener listener = new InstanceListener(location, instance);
+		InstanceListener oldListener = listeners.put(location, listener);
+
+		if (subscriber != null) {
+			if (oldListener != null) {
+				subscriber.removeListener(location, oldListener);
 			}
-		});
+
+			if (!isFollowed(location)) {
+				subscriber.addListener(location, listener);
+			}
+		}
 
 		if (oldListener != null) {
 			alert(gson.toJson(location) + " had a duplicate listener");
 		}
 	}
 
+	private void evicted(Location location, UpdatableInstance<T> instance) {
+		metrics.increment(cacheEvictionsMetric);
+		instance.detach();
+
+		InstanceListener listener = listeners.get(location);
+		if (listener == null || listener.instance != instance) {
+			return; // already replaced by a newer instance
+		}
+
+		demote(location, instance); // subscribes the off-heap copy before the instance stops listening
+
+		if (listeners.remove(location, listener) && subscriber != null) {
+			subscriber.removeListener(location, listener);
+		}
+	}
+
+	private void demote(Location location, UpdatableInstance<T> instance) {
+		OffHeapCache offHeap = this.offHeap;
+		T value = instance.get();
+		if (offHeap == null || value == null) {
+			return;
+		}
+
+		JsonObject snapshot = instance.getSnapshot(); // what was persisted, flushing a pending write-behind value drops the copy
+		JsonObject tree = snapshot == null ? tree(location, value) : snapshot;
+		byte[] bytes = gson.toJson(tree).getBytes(StandardCharsets.UTF_8);
+
+		boolean listening = subscriber != null && !isFollowed(location);
+		if (listening) { // before the put, so an update landing in between still drops the copy
+			subscriber.removeListener(location, offHeapListener); // evicted more than once
+			subscriber.addListener(location, offHeapListener);
+		}
+
+		if (!offHeap.put(location, bytes) && listening) {
+			subscriber.removeListener(location, offHeapListener);
+		}
+	}
+
+	private T takeOffHeap(Location location) {
+		OffHeapCache offHeap = this.offHeap;
+		if (offHeap == null) {
+			return null;
+		}
+
+		byte[] bytes = offHeap.take(location);
+		if (bytes == null) {
+			metrics.increment(offHeapMissMetric);
+			return null;
+		}
+		leftOffHeap(location);
+		metrics.increment(offHeapHitMetric);
+
+		T value = gson.fromJson(new String(bytes, StandardCharsets.UTF_8), type);
+		if (value != null) {
+			value.setLocation(location);
+		}
+		return value;
+	}
+
+	private void dropOffHeap(Location location) {
+		OffHeapCache offHeap = this.offHeap;
+		if (offHeap != null && location != null && offHeap.remove(location)) {
+			leftOffHeap(location);
+		}
+	}
+
+	private void leftOffHeap(Location location) {
+		if (subscriber != null) {
+			subscriber.removeListener(location, offHeapListener);
+		}
+	}
+
+	private int weigh(UpdatableInstance<T> instance) {
+		T value = instance.get();
+		if (value instanceof Weighted) {
+			return ((Weighted) value).weight();
+		}
+
+		return 1;
+	}
+
+	private final class InstanceListener implements Consumer<DocumentUpdateEvent> {
+		final Location location;
+		final UpdatableInstance<T> instance;
+		private long applied; // timestamp of the newest write seen, local or remote
+
+		InstanceListener(Location location, UpdatableInstance<T> instance) {
+			this.location = location;
+			this.instance = instance;
+		}
+
+		synchronized void written(long timestamp) {
+			applied = Math.max(applied, timestamp);
+		}
+
+		@Override
+		public synchronized void accept(DocumentUpdateEvent event) {
+			if (origin.equals(event.getOrigin())) {
+				return; // applied locally when it was written
+			}
+
+			Long timestamp = event.getTimestamp();
+			if (timestamp != null) {
+				if (timestamp < applied) {
+					return; // overtaken by a newer write, applying it would roll the document back
+				}
+				applied = timestamp;
+			}
+
+			if (Boolean.TRUE.equals(event.getDeleted())) {
+				apply(location, instance, null, null);
+				return;
+			}
+
+			if (!startsFromOurs(event)) {
+				apply(location, instance, readFromDatabase(location)); // the writer changed a state this node never held
+				return;
+			}
+
+			if (event.getValue() != null) {
+				apply(location, instance, decode(gson.fromJson(event.getValue(), JsonElement.class)));
+				return;
+			}
+
+			JsonObject snapshot = instance.getSnapshot();
+			if (event.getPatch() != null && snapshot != null) {
+				JsonElement patched = JsonMergePatch.apply(snapshot, gson.fromJson(event.getPatch(), JsonElement.class));
+				if (patched.isJsonObject()) {
+					apply(location, instance, decode(patched), patched.getAsJsonObject());
+					return;
+				}
+			}
+
+			apply(location, instance, readFromDatabase(location));
+		}
+
+		private boolean startsFromOurs(DocumentUpdateEvent event) {
+			Long base = event.getBase();
+			if (base == null) {
+				return true; // the writer kept no snapshot, nothing to compare against
+			}
+
+			JsonObject current = instance.getSnapshot();
+			if (current == null) {
+				T value = instance.get();
+				if (value == null) {
+					return false;
+				}
+				current = tree(location, value);
+			}
+
+			return base == JsonMergePatch.hash(current);
+		}
+
+		private T decode(JsonElement json) {
+			T value = gson.fromJson(json, type);
+			if (value != null) {
+				value.setLocation(location);
+			}
+			return value;
+		}
+	}
+
 	private Location location(Location location) {
 		if (location == null) {
 			return defaultLocation;
 		}
 
+		if (location.getDatabase() != null && location.getTable() != null && location.getKey() != null) {
+			return location;
+		}
+
+		if (location.getDatabase() == null && location.getTable() == null) {
+			return defaultLocation.withKey(key(location)); // Location.key(..), skips the builder
+		}
+
 		String database = database(location);
 		String table = table(location);
 		Object key = key(location);
@@ -383,7 +1295,9 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 			return;
 		}
 
-		Consumer<DocumentUpdateEvent> listener = listeners.remove(location);
+		dropOffHeap(location);
+
+		InstanceListener listener = listeners.remove(location);
 		if (listener == null) {
 			return;
 		}
@@ -392,15 +1306,43 @@ public class Store<T extends Document> implements AutoCloseable { // TODO unit t
 			subscriber.removeListener(location, listener);
 		}
 
-		cache.remove(location);
+		UpdatableInstance<T> instance = cache.remove(location);
+		if (instance != null) {
+			instance.detach();
+		}
+	}
+
+	private void closeWriteBehind() { // later saves write through
+		WriteBehindBuffer<T> writeBehind = this.writeBehind;
+		if (writeBehind != null) {
+			writeBehind.close();
+			this.writeBehind = null;
+		}
 	}
 
 	@Override
 	public void close() {
+		closeWriteBehind();
+
+		gauges.forEach(metrics::removeGauge); // the suppliers hold on to this store
+		gauges.clear();
+
+		if (changefeed != null) {
+			changefeed.close();
+			changefeed = null;
+		}
+
+		OffHeapCache offHeap = this.offHeap;
+		if (offHeap != null) {
+			this.offHeap = null; // stops evictions below from demoting
+			offHeap.close();
+		}
+
 		if (subscriber != null) {
 			listeners.forEach(subscriber::removeListener);
 		}
 		listeners.clear();
+		cache.forEach((location, instance) -> instance.detach());
 		cache.clear();
 	}
 
@@ -0,0 +1,263 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.shaded.com.google.common.base.MoreObjects;
+
+import com.ulfric.dragoon.rethink.cache.CacheSettings;
+
+public final class StoreSettings {
+
+	public static StoreSettings defaults() {
+		return builder().build();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private CacheSettings cache = CacheSettings.unbounded();
+		private int batchSize = 200;
+		private int scanBatchSize = 1000;
+		private InvalidationMode invalidation = InvalidationMode.ACTIVEMQ;
+		private EventPayload eventPayload = EventPayload.NONE;
+		private int eventPayloadThreshold = 16384;
+		private Executor callbackExecutor = ForkJoinPool.commonPool();
+		private boolean preload;
+		private int preloadRanges;
+		private boolean deltaWrites;
+		private long writeBehindWindow;
+		private int writeBehindMaximumEntries = 500;
+		private Durability durability = Durability.DEFAULT;
+		private ReadMode readMode = ReadMode.DEFAULT;
+		private boolean noreply;
+
+		protected Builder() {
+		}
+
+		public StoreSettings build() {
+			Objects.requireNonNull(cache, "cache");
+			Objects.requireNonNull(invalidation, "invalidation");
+			Objects.requireNonNull(eventPayload, "eventPayload");
+			Objects.requireNonNull(callbackExecutor, "callbackExecutor");
+			Objects.requireNonNull(durability, "durability");
+			Objects.requireNonNull(readMode, "readMode");
+
+			if (batchSize < 1) {
+				throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
+			}
+
+			if (scanBatchSize < 1) {
+				throw new IllegalArgumentException("scanBatchSize must be positive, was " + scanBatchSize);
+			}
+
+			if (writeBehindMaximumEntries < 1) {
+				throw new IllegalArgumentException("writeBehindMaximumEntries must be positive, was " + writeBehindMaximumEntries);
+			}
+
+			if (preloadRanges < 0) {
+				throw new IllegalArgumentException("preloadRanges must not be negative, was " + preloadRanges);
+			}
+
+			return new StoreSettings(this);
+		}
+
+		public Builder cache(CacheSettings cache) {
+			this.cache = cache;
+			return this;
+		}
+
+		public Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public Builder scanBatchSize(int scanBatchSize) {
+			this.scanBatchSize = scanBatchSize;
+			return this;
+		}
+
+		public Builder invalidation(InvalidationMode invalidation) {
+			this.invalidation = invalidation;
+			return this;
+		}
+
+		public Builder eventPayload(EventPayload eventPayload) {
+			this.eventPayload = eventPayload;
+			return this;
+		}
+
+		public Builder eventPayloadThreshold(int eventPayloadThreshold) {
+			this.eventPayloadThreshold = eventPayloadThreshold;
+			return this;
+		}
+
+		public Builder callbackExecutor(Executor callbackExecutor) {
+			this.callbackExecutor = callbackExecutor;
+			return this;
+		}
+
+		public Builder preload(boolean preload) {
+			this.preload = preload;
+			return this;
+		}
+
+		public Builder preloadRanges(int preloadRanges) {
+			this.preloadRanges = preloadRanges;
+			return this;
+		}
+
+		public Builder deltaWrites(boolean deltaWrites) {
+			this.deltaWrites = deltaWrites;
+			return this;
+		}
+
+		public Builder writeBehind(long window, TimeUnit unit) {
+			this.writeBehindWindow = unit.toMillis(window);
+			return this;
+		}
+
+		public Builder writeBehindMaximumEntries(int writeBehindMaximumEntries) {
+			this.writeBehindMaximumEntries = writeBehindMaximumEntries;
+			return this;
+		}
+
+		public Builder durability(Durability durability) {
+			this.durability = durability;
+			return this;
+		}
+
+		public Builder readMode(ReadMode readMode) {
+			this.readMode = readMode;
+			return this;
+		}
+
+		public Builder noreply(boolean noreply) {
+			this.noreply = noreply;
+			return this;
+		}
+	}
+
+	private final CacheSettings cache;
+	private final int batchSize;
+	private final int scanBatchSize;
+	private final InvalidationMode invalidation;
+	private final EventPayload eventPayload;
+	private final int eventPayloadThreshold;
+	private final Executor callbackExecutor;
+	private final boolean preload;
+	private final int preloadRanges;
+	private final boolean deltaWrites;
+	private final long writeBehindWindow;
+	private final int writeBehindMaximumEntries;
+	private final Durability durability;
+	private final ReadMode readMode;
+	private final boolean noreply;
+
+	private StoreSettings(Builder builder) {
+		this.cache = builder.cache;
+		this.batchSize = builder.batchSize;
+		this.scanBatchSize = builder.scanBatchSize;
+		this.invalidation = builder.invalidation;
+		this.eventPayload = builder.eventPayload;
+		this.eventPayloadThreshold = builder.eventPayloadThreshold;
+		this.callbackExecutor = builder.callbackExecutor;
+		this.preload = builder.preload;
+		this.preloadRanges = builder.preloadRanges;
+		this.deltaWrites = builder.deltaWrites;
+		this.writeBehindWindow = builder.writeBehindWindow;
+		this.writeBehindMaximumEntries = builder.writeBehindMaximumEntries;
+		this.durability = builder.durability;
+		this.readMode = builder.readMode;
+		this.noreply = builder.noreply;
+	}
+
+	public CacheSettings getCache() {
+		return cache;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getScanBatchSize() {
+		return scanBatchSize;
+	}
+
+	public InvalidationMode getInvalidation() {
+		return invalidation;
+	}
+
+	public EventPayload getEventPayload() {
+		return eventPayload;
+	}
+
+	public int getEventPayloadThreshold() {
+		return eventPayloadThreshold;
+	}
+
+	public Executor getCallbackExecutor() {
+		return callbackExecutor;
+	}
+
+	public boolean isPreload() {
+		return preload;
+	}
+
+	public int getPreloadRanges() {
+		return preloadRanges;
+	}
+
+	public boolean isDeltaWrites() {
+		return deltaWrites;
+	}
+
+	public boolean isWriteBehind() {
+		return writeBehindWindow > 0;
+	}
+
+	public long getWriteBehindWindow(TimeUnit unit) {
+		return unit.convert(writeBehindWindow, TimeUnit.MILLISECONDS);
+	}
+
+	public int getWriteBehindMaximumEntries() {
+		return writeBehindMaximumEntries;
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	public ReadMode getReadMode() {
+		return readMode;
+	}
+
+	public boolean isNoreply() {
+		return noreply;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("cache", cache)
+				.add("batchSize", batchSize)
+				.add("scanBatchSize", scanBatchSize)
+				.add("invalidation", invalidation)
+				.add("eventPayload", eventPayload)
+				.add("eventPayloadThreshold", eventPayloadThreshold)
+				.add("preload", preload)
+				.add("preloadRanges", preloadRanges)
+				.add("deltaWrites", deltaWrites)
+				.add("writeBehindWindow", writeBehindWindow)
+				.add("writeBehindMaximumEntries", writeBehindMaximumEntries)
+				.add("durability", durability)
+				.add("readMode", readMode)
+				.add("noreply", noreply)
+				.toString();
+	}
+
+}
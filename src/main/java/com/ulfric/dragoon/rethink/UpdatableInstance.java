@@ -1,53 +1,243 @@
 package com.ulfric.dragoon.rethink;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonObject;
 
 final class UpdatableInstance<T extends Document> implements Instance<T> {
 
-	private final ReadWriteLock lock = new ReentrantReadWriteLock();
-	private final List<Consumer<T>> callbacks = new ArrayList<>();
-	private T value;
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<UpdatableInstance, CompletableFuture> LOADING =
+			AtomicReferenceFieldUpdater.newUpdater(UpdatableInstance.class, CompletableFuture.class, "loading");
+
+	private final Executor executor;
+	private volatile List<Callback> callbacks; // created by the first listener, most cached entries never get one
+	private Executor serial;
+	private volatile CompletableFuture<Instance<T>> loading;
+	private volatile T value;
+	private volatile JsonObject snapshot;
+	private volatile CompletableFuture<Instance<T>> loaded;
+	private volatile boolean detached;
+	private volatile long version; // bumped by every update, a deleted document and a never loaded one both hold null
+
+	UpdatableInstance(Executor executor) {
+		this.executor = Objects.requireNonNull(executor, "executor");
+	}
 
 	@Override
 	public T get() {
 		return value;
 	}
 
+	public JsonObject getSnapshot() {
+		return snapshot;
+	}
+
+	public CompletableFuture<Instance<T>> getLoaded() {
+		return loaded;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
 	public void update(T newValue) {
+		update(newValue, null);
+	}
+
+	public synchronized void update(T newValue, JsonObject newSnapshot) {
+		this.version++;
 		this.value = newValue;
-		callbacks.forEach(consumer -> consumer.accept(newValue));
+		this.snapshot = newSnapshot;
+
+		if (newValue == null) {
+			this.loaded = null;
+		} else if (this.loaded == null) {
+			this.loaded = CompletableFuture.completedFuture(this);
+		}
+
+		List<Callback> callbacks = this.callbacks;
+		if (callbacks != null) {
+			callbacks.forEach(callback -> callback.notify(newValue));
+		}
+	}
+
+	public synchronized void persisted(JsonObject newSnapshot) { // the value is already newer, only what the server holds moved
+		this.snapshot = newSnapshot;
+	}
+
+	public synchronized boolean updateIfUnchanged(long expectedVersion, T newValue, JsonObject newSnapshot) {
+		if (version != expectedVersion || loaded != null) {
+			return false; // updated since the load started, the loaded value is stale
+		}
+
+		update(newValue, newSnapshot);
+		return true;
+	}
+
+	public synchronized boolean updateIfAbsent(T placeholder) {
+		if (value != null) {
+			return false;
+		}
+
+		update(placeholder, null);
+		return true;
 	}
 
 	public boolean isAbsent() {
 		return get() == null;
 	}
 
-	public void lockWrite() {
-		lock.writeLock().lock();
+	@Override
+	public boolean isDetached() {
+		return detached;
 	}
 
-	public void unlockWrite() {
-		lock.writeLock().unlock();
+	void detach() {
+		detached = true;
 	}
 
-	public void lockRead() {
-		lock.readLock().lock();
+	@SuppressWarnings("unchecked") // LOADING is raw, the field it updates is typed
+	public CompletableFuture<Instance<T>> load(Supplier<CompletableFuture<T>> loader, Consumer<T> onLoad) {
+		while (true) {
+			CompletableFuture<Instance<T>> done = loaded;
+			if (done != null) {
+				return done;
+			}
+
+			CompletableFuture<Instance<T>> inFlight = loading;
+			if (inFlight != null) {
+				return inFlight;
+			}
+
+			CompletableFuture<Instance<T>> promise = new CompletableFuture<>();
+			if (!LOADING.compareAndSet(this, null, promise)) {
+				continue;
+			}
+
+			if (loaded != null) { // loaded by an update while we were racing for the slot
+				LOADING.compareAndSet(this, promise, null);
+				promise.complete(this);
+				return promise;
+			}
+
+			CompletableFuture<T> source;
+			try {
+				source = loader.get();
+			} catch (Throwable thrown) {
+				fail(promise, thrown);
+				return promise;
+			}
+
+			source.whenComplete((result, error) -> {
+				if (error != null) {
+					fail(promise, error);
+					return;
+				}
+
+				try {
+					onLoad.accept(result);
+				} catch (Throwable thrown) {
+					fail(promise, thrown);
+					return;
+				}
+
+				LOADING.compareAndSet(this, promise, null);
+				promise.complete(this);
+			});
+
+			return promise;
+		}
 	}
 
-	public void unlockRead() {
-		lock.readLock().unlock();
+	@SuppressWarnings("unchecked")
+	private void fail(CompletableFuture<Instance<T>> promise, Throwable thrown) {
+		LOADING.compareAndSet(this, promise, null);
+		promise.completeExceptionally(thrown);
 	}
 
 	@Override
 	public void addListener(Consumer<T> listener) {
+		addListener(listener, false);
+	}
+
+	@Override
+	public synchronized void addListener(Consumer<T> listener, boolean coalesce) { // with update, so the lazy fields are made once
 		Objects.requireNonNull(listener, "listener");
 
-		callbacks.add(listener);
+		if (callbacks == null) {
+			serial = new SerialExecutor(executor);
+			callbacks = new CopyOnWriteArrayList<>();
+		}
+
+		callbacks.add(new Callback(listener, coalesce, serial));
+	}
+
+	@Override
+	public void removeListener(Consumer<T> listener) {
+		List<Callback> callbacks = this.callbacks;
+		if (callbacks == null) {
+			return;
+		}
+
+		for (Callback callback : callbacks) {
+			if (callback.listener.equals(listener)) {
+				callback.removed = true;
+				callbacks.remove(callback);
+			}
+		}
+	}
+
+	private final class Callback {
+		final Consumer<T> listener;
+		final boolean coalesce;
+		final Executor executor;
+		final AtomicReference<Pending<T>> pending = new AtomicReference<>();
+		volatile boolean removed;
+
+		Callback(Consumer<T> listener, boolean coalesce, Executor executor) {
+			this.listener = listener;
+			this.coalesce = coalesce;
+			this.executor = executor;
+		}
+
+		void notify(T value) {
+			if (!coalesce) {
+				executor.execute(() -> run(value));
+				return;
+			}
+
+			if (pending.getAndSet(new Pending<>(value)) == null) {
+				executor.execute(() -> {
+					Pending<T> latest = pending.getAndSet(null);
+					if (latest != null) {
+						run(latest.value);
+					}
+				});
+			}
+		}
+
+		private void run(T value) {
+			if (!removed) {
+				listener.accept(value);
+			}
+		}
+	}
+
+	private static final class Pending<T> {
+		final T value;
+
+		Pending(T value) {
+			this.value = value;
+		}
 	}
 
 }
@@ -0,0 +1,145 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.curator.shaded.com.google.common.base.MoreObjects;
+
+public final class Update { // plain data like Query, every backend evaluates it
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private final List<Change> changes = new ArrayList<>();
+		private String versionField;
+		private long expectedVersion;
+
+		protected Builder() {
+		}
+
+		public Update build() {
+			if (changes.isEmpty()) {
+				throw new IllegalStateException("An update needs at least one change");
+			}
+
+			return new Update(this);
+		}
+
+		public Builder set(String field, Object value) {
+			return change(Operation.SET, field, value);
+		}
+
+		public Builder increment(String field, Number amount) {
+			Objects.requireNonNull(amount, "amount");
+
+			return change(Operation.INCREMENT, field, amount);
+		}
+
+		public Builder append(String field, Object value) {
+			return change(Operation.APPEND, field, value);
+		}
+
+		public Builder ifVersion(String versionField, long expected) { // fails unless the field holds expected, then bumps it
+			Objects.requireNonNull(versionField, "versionField");
+			requireUnchanged(versionField);
+
+			this.versionField = versionField;
+			this.expectedVersion = expected;
+			return this;
+		}
+
+		private Builder change(Operation operation, String field, Object value) {
+			Objects.requireNonNull(field, "field");
+			requireUnchanged(field);
+			if (field.equals(versionField)) {
+				throw new IllegalArgumentException("Field " + field + " is already the version field");
+			}
+
+			changes.add(new Change(operation, field, value));
+			return this;
+		}
+
+		private void requireUnchanged(String field) { // every change reads the stored document, not the other changes
+			for (Change change : changes) {
+				if (change.field.equals(field)) {
+					throw new IllegalArgumentException("Field " + field + " is already changed by this update");
+				}
+			}
+		}
+	}
+
+	private final List<Change> changes;
+	private final String versionField;
+	private final long expectedVersion;
+
+	private Update(Builder builder) {
+		this.changes = Collections.unmodifiableList(new ArrayList<>(builder.changes));
+		this.versionField = builder.versionField;
+		this.expectedVersion = builder.expectedVersion;
+	}
+
+	public Builder toBuilder() {
+		Builder builder = builder();
+		builder.changes.addAll(changes);
+		builder.versionField = versionField;
+		builder.expectedVersion = expectedVersion;
+		return builder;
+	}
+
+	boolean isVersioned() {
+		return versionField != null;
+	}
+
+	List<Change> getChanges() {
+		return changes;
+	}
+
+	String getVersionField() {
+		return versionField;
+	}
+
+	long getExpectedVersion() {
+		return expectedVersion;
+	}
+
+	String versionMismatch() {
+		return String.format("Expected %s to be %d", versionField, expectedVersion);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("changes", changes)
+				.add("versionField", versionField)
+				.add("expectedVersion", expectedVersion)
+				.toString();
+	}
+
+	enum Operation {
+		SET,
+		INCREMENT,
+		APPEND;
+	}
+
+	static final class Change {
+		final Operation operation;
+		final String field;
+		final Object value;
+
+		Change(Operation operation, String field, Object value) {
+			this.operation = operation;
+			this.field = field;
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return operation + " " + field + ' ' + value;
+		}
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.Objects;
+
+public class Updates {
+
+	public static Update set(String field, Object value) {
+		return Update.builder().set(field, value).build();
+	}
+
+	public static Update increment(String field, Number amount) {
+		return Update.builder().increment(field, amount).build();
+	}
+
+	public static Update append(String field, Object value) {
+		return Update.builder().append(field, value).build();
+	}
+
+	public static Update ifVersion(String versionField, long expected, Update update) {
+		Objects.requireNonNull(update, "update");
+
+		return update.toBuilder().ifVersion(versionField, expected).build();
+	}
+
+	private Updates() {
+	}
+
+}
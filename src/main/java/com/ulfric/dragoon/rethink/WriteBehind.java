@@ -0,0 +1,17 @@
+package com.ulfric.dragoon.rethink;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface WriteBehind {
+
+	long value(); // flush window in milliseconds
+
+	int maximumEntries() default 500;
+
+}
@@ -0,0 +1,313 @@
+package com.ulfric.dragoon.rethink;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ulfric.dragoon.rethink.response.Response;
+
+final class WriteBehindBuffer<T extends Document> implements AutoCloseable {
+
+	private static final long RETRY_MILLIS = 1000;
+
+	private final long window;
+	private final int maximumEntries;
+	private final Function<List<T>, CompletableFuture<Response>> writer;
+	private final Logger logger;
+	private final Map<Location, Slot<T>> slots = new LinkedHashMap<>();
+	private final Map<Location, Integer> held = new HashMap<>(); // deletes and direct writes waiting their turn on the flusher
+	private final ScheduledExecutorService flusher;
+	private final AtomicLong maximumFlushLatency = new AtomicLong();
+	private volatile Thread flusherThread;
+	private volatile long lastFlushLatency;
+	private boolean scheduled;
+	private boolean flushQueued;
+	private boolean closed;
+
+	WriteBehindBuffer(String name, long window, int maximumEntries,
+			Function<List<T>, CompletableFuture<Response>> writer, Logger logger) {
+		Objects.requireNonNull(name, "name");
+		Objects.requireNonNull(writer, "writer");
+
+		this.window = window;
+		this.maximumEntries = Math.max(1, maximumEntries);
+		this.writer = writer;
+		this.logger = logger;
+
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "rethinkdb-write-behind-" + name);
+			thread.setDaemon(true);
+			flusherThread = thread;
+			return thread;
+		});
+	}
+
+	CompletableFuture<Response> submit(Location location, T value) {
+		Objects.requireNonNull(location, "location");
+		Objects.requireNonNull(value, "value");
+
+		synchronized (slots) {
+			while (!closed && slots.size() >= maximumEntries && !slots.containsKey(location)
+					&& Thread.currentThread() != flusherThread) { // backpressure, the caller waits for a drain to make room
+				requestFlush();
+				try {
+					slots.wait();
+				} catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					return null; // written through instead
+				}
+			}
+
+			if (closed) {
+				return null;
+			}
+
+			Slot<T> slot = slots.get(location);
+			if (slot == null) {
+				slot = new Slot<>();
+				slots.put(location, slot);
+			}
+			slot.value = value; // last write wins
+
+			if (slots.size() >= maximumEntries) {
+				requestFlush();
+			} else {
+				schedule(window);
+			}
+
+			return slot.future;
+		}
+	}
+
+	void discard(Location location) {
+		Slot<T> slot;
+		synchronized (slots) {
+			slot = slots.remove(location);
+			slots.notifyAll();
+		}
+
+		if (slot != null) {
+			superseded(slot);
+		}
+	}
+
+	<R> CompletableFuture<R> discard(Collection<Location> locations, Supplier<R> action) { // drops pending writes now and holds back later ones until the action ran
+		List<Slot<T>> discarded = new ArrayList<>();
+		synchronized (slots) {
+			for (Location location : locations) {
+				Slot<T> slot = slots.remove(location);
+				if (slot != null) {
+					discarded.add(slot);
+				}
+				held.merge(location, 1, Integer::sum);
+			}
+			slots.notifyAll();
+		}
+		discarded.forEach(this::superseded);
+
+		return serialize(() -> {
+			try {
+				return action.get();
+			} finally {
+				release(locations);
+			}
+		});
+	}
+
+	private void release(Collection<Location> locations) {
+		synchronized (slots) {
+			for (Location location : locations) {
+				held.computeIfPresent(location, (key, count) -> count == 1 ? null : count - 1);
+			}
+
+			if (!slots.isEmpty()) {
+				schedule(window);
+			}
+		}
+	}
+
+	boolean unlessPending(Location location, Runnable action) { // atomic against submit, so a newer value is never overwritten by an older flush
+		synchronized (slots) {
+			if (slots.containsKey(location)) {
+				return false;
+			}
+
+			action.run();
+			return true;
+		}
+	}
+
+	<R> CompletableFuture<R> serialize(Supplier<R> action) { // runs on the flusher, so never alongside a drain
+		try {
+			return CompletableFuture.supplyAsync(action, flusher);
+		} catch (RejectedExecutionException closed) {
+			return CompletableFuture.completedFuture(action.get());
+		}
+	}
+
+	<R> CompletableFuture<R> flushThen(Supplier<R> action) { // pending writes land before the action
+		return serialize(() -> {
+			drain();
+			return action.get();
+		});
+	}
+
+	public CompletableFuture<Void> flush() {
+		try {
+			return CompletableFuture.runAsync(this::drain, flusher);
+		} catch (RejectedExecutionException closed) {
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+
+	private void requestFlush() { // one queued flush at a time, however many submits find the buffer full
+		if (flushQueued) {
+			return;
+		}
+
+		try {
+			flusher.execute(this::drain);
+			flushQueued = true;
+		} catch (RejectedExecutionException closed) {
+			// close drains whatever is left
+		}
+	}
+
+	private void schedule(long delay) {
+		if (scheduled || closed) {
+			return;
+		}
+
+		try {
+			flusher.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+			scheduled = true;
+		} catch (RejectedExecutionException closed) {
+			// close drains whatever is left
+		}
+	}
+
+	private void drain() {
+		Map<Location, Slot<T>> drained = new LinkedHashMap<>();
+		synchronized (slots) {
+			scheduled = false;
+			flushQueued = false;
+
+			Iterator<Map.Entry<Location, Slot<T>>> iterator = slots.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<Location, Slot<T>> entry = iterator.next();
+				if (!held.containsKey(entry.getKey())) { // released slots reschedule a drain
+					drained.put(entry.getKey(), entry.getValue());
+					iterator.remove();
+				}
+			}
+
+			if (drained.isEmpty()) {
+				return;
+			}
+			slots.notifyAll();
+		}
+
+		List<T> values = new ArrayList<>(drained.size());
+		drained.values().forEach(slot -> values.add(slot.value));
+
+		long start = System.nanoTime();
+		try {
+			Response response = writer.apply(values).join();
+			drained.values().forEach(slot -> slot.future.complete(response));
+		} catch (RuntimeException exception) {
+			log(Level.SEVERE, "Failed to write behind " + values.size() + " documents", exception);
+			requeue(drained, exception);
+		} finally {
+			long latency = System.nanoTime() - start;
+			lastFlushLatency = latency;
+			maximumFlushLatency.accumulateAndGet(latency, Math::max);
+		}
+	}
+
+	private void requeue(Map<Location, Slot<T>> failed, RuntimeException exception) { // the cache already holds these values, dropping them would lose the write
+		List<Slot<T>> abandoned = new ArrayList<>();
+		synchronized (slots) {
+			if (closed) {
+				abandoned.addAll(failed.values());
+			} else {
+				failed.forEach((location, slot) -> {
+					Slot<T> newer = slots.get(location);
+					if (newer == null) {
+						slots.put(location, slot);
+					} else {
+						newer.future.whenComplete((response, thrown) -> complete(slot, response, thrown));
+					}
+				});
+				schedule(Math.max(window, RETRY_MILLIS));
+			}
+		}
+
+		abandoned.forEach(slot -> slot.future.completeExceptionally(exception));
+	}
+
+	private void complete(Slot<T> slot, Response response, Throwable thrown) {
+		if (thrown == null) {
+			slot.future.complete(response);
+		} else {
+			slot.future.completeExceptionally(thrown);
+		}
+	}
+
+	private void superseded(Slot<T> slot) {
+		Response superseded = new Response();
+		superseded.setUnchanged(1);
+		slot.future.complete(superseded);
+	}
+
+	public int getQueueDepth() {
+		synchronized (slots) {
+			return slots.size();
+		}
+	}
+
+	public long getLastFlushLatency(TimeUnit unit) {
+		return unit.convert(lastFlushLatency, TimeUnit.NANOSECONDS);
+	}
+
+	public long getMaximumFlushLatency(TimeUnit unit) {
+		return unit.convert(maximumFlushLatency.get(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void close() {
+		synchronized (slots) {
+			closed = true;
+			slots.notifyAll();
+		}
+
+		flush().join();
+		flusher.shutdown();
+	}
+
+	private void log(Level level, String message, Throwable thrown) {
+		if (logger != null) {
+			logger.log(level, message, thrown);
+		}
+	}
+
+	private static final class Slot<T> {
+		final CompletableFuture<Response> future = new CompletableFuture<>();
+		T value;
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import com.ulfric.dragoon.rethink.EnumHelper;
+
+public enum CachePolicy {
+
+	UNBOUNDED,
+	LRU,
+	TINY_LFU;
+
+	public static CachePolicy parse(String name) {
+		return EnumHelper.parse(CachePolicy.class, name, UNBOUNDED);
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.shaded.com.google.common.base.MoreObjects;
+
+public final class CacheSettings {
+
+	public static CacheSettings unbounded() {
+		return builder().build();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private CachePolicy policy = CachePolicy.UNBOUNDED;
+		private long maximumSize;
+		private long maximumWeight;
+		private long expireAfterAccess;
+		private long expireAfterWrite;
+		private long offHeapSize;
+		private int offHeapSegmentSize = 64 << 20;
+		private Path offHeapDirectory;
+
+		protected Builder() {
+		}
+
+		public CacheSettings build() {
+			Objects.requireNonNull(policy, "policy");
+
+			if (maximumSize > 0 && maximumWeight > 0) {
+				throw new IllegalArgumentException("Only one of maximumSize and maximumWeight may be set");
+			}
+
+			if (offHeapSize > 0 && offHeapSegmentSize <= 0) {
+				throw new IllegalArgumentException("offHeapSegmentSize must be positive, was " + offHeapSegmentSize);
+			}
+
+			return new CacheSettings(policy, maximumSize, maximumWeight, expireAfterAccess, expireAfterWrite,
+					offHeapSize, offHeapSegmentSize, offHeapDirectory);
+		}
+
+		public Builder policy(CachePolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+
+		public Builder maximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		public Builder maximumWeight(long maximumWeight) {
+			this.maximumWeight = maximumWeight;
+			return this;
+		}
+
+		public Builder expireAfterAccess(long expireAfterAccess, TimeUnit unit) {
+			this.expireAfterAccess = unit.toMillis(expireAfterAccess);
+			return this;
+		}
+
+		public Builder expireAfterWrite(long expireAfterWrite, TimeUnit unit) {
+			this.expireAfterWrite = unit.toMillis(expireAfterWrite);
+			return this;
+		}
+
+		public Builder offHeapSize(long offHeapSize) {
+			this.offHeapSize = offHeapSize;
+			return this;
+		}
+
+		public Builder offHeapSegmentSize(int offHeapSegmentSize) {
+			this.offHeapSegmentSize = offHeapSegmentSize;
+			return this;
+		}
+
+		public Builder offHeapDirectory(Path offHeapDirectory) {
+			this.offHeapDirectory = offHeapDirectory;
+			return this;
+		}
+	}
+
+	private final CachePolicy policy;
+	private final long maximumSize;
+	private final long maximumWeight;
+	private final long expireAfterAccess;
+	private final long expireAfterWrite;
+	private final long offHeapSize;
+	private final int offHeapSegmentSize;
+	private final Path offHeapDirectory;
+
+	private CacheSettings(CachePolicy policy, long maximumSize, long maximumWeight,
+			long expireAfterAccess, long expireAfterWrite,
+			long offHeapSize, int offHeapSegmentSize, Path offHeapDirectory) {
+		this.policy = policy;
+		this.maximumSize = maximumSize;
+		this.maximumWeight = maximumWeight;
+		this.expireAfterAccess = expireAfterAccess;
+		this.expireAfterWrite = expireAfterWrite;
+		this.offHeapSize = offHeapSize;
+		this.offHeapSegmentSize = offHeapSegmentSize;
+		this.offHeapDirectory = offHeapDirectory;
+	}
+
+	public CachePolicy getPolicy() {
+		return policy;
+	}
+
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+	public long getExpireAfterAccess() {
+		return expireAfterAccess;
+	}
+
+	public long getExpireAfterWrite() {
+		return expireAfterWrite;
+	}
+
+	public long getOffHeapSize() {
+		return offHeapSize;
+	}
+
+	public int getOffHeapSegmentSize() {
+		return offHeapSegmentSize;
+	}
+
+	public Path getOffHeapDirectory() {
+		return offHeapDirectory;
+	}
+
+	public boolean isOffHeap() {
+		return offHeapSize > 0;
+	}
+
+	public boolean isSizeBounded() {
+		return maximumSize > 0;
+	}
+
+	public boolean isWeightBounded() {
+		return maximumWeight > 0;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("policy", policy)
+				.add("maximumSize", maximumSize)
+				.add("maximumWeight", maximumWeight)
+				.add("expireAfterAccess", expireAfterAccess)
+				.add("expireAfterWrite", expireAfterWrite)
+				.add("offHeapSize", offHeapSize)
+				.add("offHeapSegmentSize", offHeapSegmentSize)
+				.add("offHeapDirectory", offHeapDirectory)
+				.toString();
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.ulfric.dragoon.rethink.Location;
+
+final class CaffeineDocumentCache<V> implements DocumentCache<V> {
+
+	private final Cache<Location, V> cache;
+
+	CaffeineDocumentCache(CacheSettings settings, ToIntFunction<V> weigher, EvictionListener<V> listener) {
+		Caffeine<Location, V> builder = Caffeine.newBuilder()
+				.executor(Runnable::run)
+				.removalListener((Location location, V value, RemovalCause cause) -> {
+					if (cause.wasEvicted() && location != null && value != null) {
+						listener.evicted(location, value);
+					}
+				});
+
+		if (settings.isSizeBounded()) {
+			builder.maximumSize(settings.getMaximumSize());
+		} else if (settings.isWeightBounded()) {
+			builder.maximumWeight(settings.getMaximumWeight())
+				.weigher((Location location, V value) -> Math.max(0, weigher.applyAsInt(value)));
+		}
+
+		if (settings.getExpireAfterAccess() > 0) {
+			builder.expireAfterAccess(settings.getExpireAfterAccess(), TimeUnit.MILLISECONDS);
+		}
+
+		if (settings.getExpireAfterWrite() > 0) {
+			builder.expireAfterWrite(settings.getExpireAfterWrite(), TimeUnit.MILLISECONDS);
+		}
+
+		this.cache = builder.build();
+	}
+
+	@Override
+	public V get(Location location) {
+		return cache.getIfPresent(location);
+	}
+
+	@Override
+	public V computeIfAbsent(Location location, Function<Location, V> loader) {
+		return cache.get(location, loader);
+	}
+
+	@Override
+	public V remove(Location location) {
+		return cache.asMap().remove(location);
+	}
+
+	@Override
+	public void reweigh(Location location) { // a write, so expireAfterWrite restarts too
+		cache.asMap().computeIfPresent(location, (key, value) -> value);
+	}
+
+	@Override
+	public void forEach(BiConsumer<Location, V> consumer) {
+		cache.asMap().forEach(consumer);
+	}
+
+	@Override
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	@Override
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.ulfric.dragoon.rethink.Location;
+
+public interface DocumentCache<V> {
+
+	V get(Location location);
+
+	V computeIfAbsent(Location location, Function<Location, V> loader);
+
+	V remove(Location location);
+
+	void reweigh(Location location);
+
+	void forEach(BiConsumer<Location, V> consumer);
+
+	long size();
+
+	void clear();
+
+}
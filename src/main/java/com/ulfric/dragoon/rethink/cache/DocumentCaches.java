@@ -0,0 +1,28 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+public class DocumentCaches {
+
+	public static <V> DocumentCache<V> create(CacheSettings settings, ToIntFunction<V> weigher, EvictionListener<V> listener) {
+		Objects.requireNonNull(settings, "settings");
+		Objects.requireNonNull(weigher, "weigher");
+		Objects.requireNonNull(listener, "listener");
+
+		switch (settings.getPolicy()) {
+			case UNBOUNDED:
+				return new UnboundedDocumentCache<>();
+			case LRU:
+				return new LruDocumentCache<>(settings, weigher, listener);
+			case TINY_LFU:
+				return new CaffeineDocumentCache<>(settings, weigher, listener);
+			default:
+				throw new IllegalArgumentException("Unknown cache policy " + settings.getPolicy());
+		}
+	}
+
+	private DocumentCaches() {
+	}
+
+}
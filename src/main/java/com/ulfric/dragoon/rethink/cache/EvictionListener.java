@@ -0,0 +1,10 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import com.ulfric.dragoon.rethink.Location;
+
+@FunctionalInterface
+public interface EvictionListener<V> {
+
+	void evicted(Location location, V value);
+
+}
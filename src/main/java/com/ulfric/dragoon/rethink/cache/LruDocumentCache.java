@@ -0,0 +1,294 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import com.ulfric.dragoon.rethink.Location;
+
+final class LruDocumentCache<V> implements DocumentCache<V> { // second-chance LRU: hits only flag the entry, reordering happens lazily under the lock
+
+	private final Map<Location, Entry<V>> index = new ConcurrentHashMap<>(); // read without the lock on a hit
+	private final LinkedHashMap<Location, Entry<V>> entries = new LinkedHashMap<>(); // queue ordered, eldest first
+	private final LinkedHashMap<Location, Entry<V>> writes = new LinkedHashMap<>(); // write ordered, only kept with expireAfterWrite
+	private final CacheSettings settings;
+	private final ToIntFunction<V> weigher;
+	private final EvictionListener<V> listener;
+	private long weight;
+
+	LruDocumentCache(CacheSettings settings, ToIntFunction<V> weigher, EvictionListener<V> listener) {
+		this.settings = settings;
+		this.weigher = weigher;
+		this.listener = listener;
+	}
+
+	@Override
+	public V get(Location location) {
+		Entry<V> entry = index.get(location);
+		if (entry == null) {
+			return null;
+		}
+
+		if (!isExpiring()) {
+			entry.touch(0);
+			return entry.value;
+		}
+
+		long now = System.currentTimeMillis();
+		if (!isExpired(entry, now)) {
+			entry.touch(now);
+			return entry.value;
+		}
+
+		List<Entry<V>> evicted = new ArrayList<>(1); // only an expired hit takes the lock
+		synchronized (entries) {
+			if (entries.get(location) == entry) {
+				unlink(entry);
+				evicted.add(entry);
+			}
+			expire(now, evicted);
+		}
+
+		notifyEvicted(evicted);
+		return null;
+	}
+
+	@Override
+	public V computeIfAbsent(Location location, Function<Location, V> loader) {
+		V cached = get(location);
+		if (cached != null) {
+			return cached;
+		}
+
+		List<Entry<V>> evicted = new ArrayList<>(0);
+		V value;
+
+		synchronized (entries) {
+			long now = System.currentTimeMillis();
+			expire(now, evicted);
+
+			Entry<V> existing = entries.get(location);
+			if (existing != null) {
+				existing.touch(now);
+				value = existing.value;
+			} else {
+				value = loader.apply(location);
+
+				if (value != null) {
+					Entry<V> entry = new Entry<>(location, value, weigh(value), now);
+					entries.put(location, entry);
+					if (isWriteOrdered()) {
+						writes.put(location, entry);
+					}
+					index.put(location, entry);
+					weight += entry.weight;
+
+					trim(evicted);
+				}
+			}
+		}
+
+		notifyEvicted(evicted);
+		return value;
+	}
+
+	@Override
+	public V remove(Location location) {
+		synchronized (entries) {
+			Entry<V> entry = entries.get(location);
+			if (entry == null) {
+				return null;
+			}
+
+			unlink(entry);
+			return entry.value;
+		}
+	}
+
+	@Override
+	public void reweigh(Location location) { // counts as a write, like the caffeine policy
+		List<Entry<V>> evicted = new ArrayList<>(0);
+
+		synchronized (entries) {
+			long now = System.currentTimeMillis();
+			expire(now, evicted);
+
+			Entry<V> entry = entries.get(location);
+			if (entry != null) {
+				entry.touch(now);
+				entry.written = now;
+				if (isWriteOrdered()) {
+					writes.remove(location);
+					writes.put(location, entry);
+				}
+
+				int newWeight = weigh(entry.value);
+				weight += newWeight - entry.weight;
+				entry.weight = newWeight;
+
+				trim(evicted);
+			}
+		}
+
+		notifyEvicted(evicted);
+	}
+
+	@Override
+	public void forEach(BiConsumer<Location, V> consumer) {
+		List<Entry<V>> evicted = new ArrayList<>(0);
+		List<Entry<V>> snapshot;
+		synchronized (entries) {
+			expire(System.currentTimeMillis(), evicted);
+			snapshot = new ArrayList<>(entries.values());
+		}
+
+		notifyEvicted(evicted);
+		snapshot.forEach(entry -> consumer.accept(entry.location, entry.value));
+	}
+
+	@Override
+	public long size() {
+		List<Entry<V>> evicted = new ArrayList<>(0);
+		long size;
+		synchronized (entries) {
+			expire(System.currentTimeMillis(), evicted);
+			size = entries.size();
+		}
+
+		notifyEvicted(evicted);
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			writes.clear();
+			index.clear();
+			weight = 0;
+		}
+	}
+
+	private void expire(long now, List<Entry<V>> evicted) {
+		if (settings.getExpireAfterAccess() > 0) {
+			sweep(entry -> isExpired(entry, now), evicted);
+		}
+
+		long expireAfterWrite = settings.getExpireAfterWrite();
+		if (expireAfterWrite > 0) { // write order puts the next entry to expire first, so this stops at the first live one
+			Iterator<Entry<V>> eldest = writes.values().iterator();
+			while (eldest.hasNext()) {
+				Entry<V> entry = eldest.next();
+				if (now - entry.written <= expireAfterWrite) {
+					break;
+				}
+
+				eldest.remove();
+				entries.remove(entry.location);
+				index.remove(entry.location, entry);
+				weight -= entry.weight;
+				evicted.add(entry);
+			}
+		}
+	}
+
+	private void trim(List<Entry<V>> evicted) {
+		sweep(entry -> isOverCapacity(), evicted);
+	}
+
+	private void sweep(Predicate<Entry<V>> stale, List<Entry<V>> evicted) {
+		int chances = entries.size(); // every entry can be moved back once, hits racing the sweep can't keep it going
+		while (!entries.isEmpty()) {
+			Entry<V> entry = entries.values().iterator().next();
+
+			if (entry.referenced && chances-- > 0) { // used since it was queued, give it another pass
+				entry.referenced = false;
+				entries.remove(entry.location);
+				entries.put(entry.location, entry);
+				continue;
+			}
+
+			if (!stale.test(entry)) {
+				break;
+			}
+
+			unlink(entry);
+			evicted.add(entry);
+		}
+	}
+
+	private void unlink(Entry<V> entry) {
+		entries.remove(entry.location);
+		writes.remove(entry.location);
+		index.remove(entry.location, entry);
+		weight -= entry.weight;
+	}
+
+	private boolean isExpired(Entry<V> entry, long now) {
+		long expireAfterAccess = settings.getExpireAfterAccess();
+		if (expireAfterAccess > 0 && now - entry.accessed > expireAfterAccess) {
+			return true;
+		}
+
+		long expireAfterWrite = settings.getExpireAfterWrite();
+		return expireAfterWrite > 0 && now - entry.written > expireAfterWrite;
+	}
+
+	private boolean isExpiring() {
+		return settings.getExpireAfterAccess() > 0 || settings.getExpireAfterWrite() > 0;
+	}
+
+	private boolean isOverCapacity() {
+		if (settings.isSizeBounded() && entries.size() > settings.getMaximumSize()) {
+			return true;
+		}
+
+		return settings.isWeightBounded() && weight > settings.getMaximumWeight();
+	}
+
+	private boolean isWriteOrdered() {
+		return settings.getExpireAfterWrite() > 0;
+	}
+
+	private int weigh(V value) {
+		return settings.isWeightBounded() ? Math.max(0, weigher.applyAsInt(value)) : 1;
+	}
+
+	private void notifyEvicted(List<Entry<V>> evicted) {
+		evicted.forEach(entry -> listener.evicted(entry.location, entry.value));
+	}
+
+	private static final class Entry<V> {
+		final Location location;
+		final V value;
+		int weight;
+		volatile long written;
+		volatile long accessed;
+		volatile boolean referenced;
+
+		Entry(Location location, V value, int weight, long now) {
+			this.location = location;
+			this.value = value;
+			this.weight = weight;
+			this.written = now;
+			this.accessed = now;
+		}
+
+		void touch(long now) {
+			if (now != 0) {
+				accessed = now;
+			}
+			if (!referenced) { // skips the write on repeat hits, keeps the line shared between readers
+				referenced = true;
+			}
+		}
+	}
+
+}
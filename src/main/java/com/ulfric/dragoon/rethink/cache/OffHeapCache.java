@@ -0,0 +1,305 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import org.apache.curator.shaded.com.google.common.base.MoreObjects;
+
+import com.ulfric.dragoon.rethink.Location;
+
+public final class OffHeapCache implements AutoCloseable { // log-structured: records append to mapped segments, the oldest segment is recycled whole
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private String name = "default";
+		private Path directory;
+		private long maximumSize;
+		private int segmentSize = 64 << 20;
+		private Consumer<Location> evictionListener = ignore -> { };
+
+		protected Builder() {
+		}
+
+		public OffHeapCache build() {
+			Objects.requireNonNull(name, "name");
+			Objects.requireNonNull(evictionListener, "evictionListener");
+
+			if (maximumSize <= 0) {
+				throw new IllegalArgumentException("maximumSize must be positive, was " + maximumSize);
+			}
+
+			int size = (int) Math.max(4096, Math.min(segmentSize, maximumSize / 2)); // at least two segments, one filling and one to recycle
+			int segments = (int) Math.max(2, Math.min(Integer.MAX_VALUE, maximumSize / size));
+
+			Path parent = directory == null ? Paths.get(System.getProperty("java.io.tmpdir"), "rethink-dragoon") : directory;
+			try {
+				Files.createDirectories(parent);
+				return new OffHeapCache(name, Files.createTempDirectory(parent, name + '-'), size, segments, evictionListener);
+			} catch (IOException exception) {
+				throw new UncheckedIOException("Could not create off-heap cache directory in " + parent, exception);
+			}
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder directory(Path directory) {
+			this.directory = directory;
+			return this;
+		}
+
+		public Builder maximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		public Builder segmentSize(int segmentSize) {
+			this.segmentSize = segmentSize;
+			return this;
+		}
+
+		public Builder evictionListener(Consumer<Location> evictionListener) {
+			this.evictionListener = evictionListener;
+			return this;
+		}
+	}
+
+	private final String name;
+	private final Path directory;
+	private final int segmentSize;
+	private final Segment[] segments;
+	private final Consumer<Location> evictionListener;
+	private final Map<Location, Long> index = new ConcurrentHashMap<>(); // segment id in the high bits, offset in the low bits
+	private final StampedLock recycling = new StampedLock();
+	private final AtomicLong evictions = new AtomicLong();
+	private Segment current;
+	private boolean closed;
+
+	private OffHeapCache(String name, Path directory, int segmentSize, int segments, Consumer<Location> evictionListener) {
+		this.name = name;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.segments = new Segment[segments];
+		this.evictionListener = evictionListener;
+	}
+
+	public byte[] get(Location location) {
+		Long address = index.get(location);
+		return address == null ? null : read(location, address);
+	}
+
+	public byte[] take(Location location) { // removes on the way out, a concurrent write or eviction turns this into a miss
+		Long address = index.get(location);
+		if (address == null) {
+			return null;
+		}
+
+		byte[] value = read(location, address);
+		return value != null && index.remove(location, address) ? value : null;
+	}
+
+	public synchronized boolean put(Location location, byte[] value) {
+		Objects.requireNonNull(location, "location");
+		Objects.requireNonNull(value, "value");
+
+		int length = Integer.BYTES + value.length;
+		if (closed || length > segmentSize) {
+			return false;
+		}
+
+		Segment segment = current;
+		if (segment == null || segment.position + length > segmentSize) {
+			segment = roll();
+		}
+
+		int offset = segment.position;
+		ByteBuffer buffer = segment.buffer.duplicate();
+		buffer.position(offset);
+		buffer.putInt(value.length);
+		buffer.put(value);
+
+		segment.position += length;
+		segment.locations.add(location);
+		index.put(location, address(segment.id, offset)); // publishes the record to readers
+		return true;
+	}
+
+	public boolean remove(Location location) {
+		return index.remove(location) != null;
+	}
+
+	public long size() {
+		return index.size();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public synchronized long getMappedBytes() {
+		long mapped = 0;
+		for (Segment segment : segments) {
+			if (segment != null) {
+				mapped += segmentSize;
+			}
+		}
+		return mapped;
+	}
+
+	private byte[] read(Location location, long address) {
+		long stamp = recycling.tryOptimisticRead();
+		byte[] value = read(address);
+		if (recycling.validate(stamp)) {
+			return value;
+		}
+
+		stamp = recycling.readLock();
+		try {
+			Long latest = index.get(location);
+			return latest == null || latest != address ? null : read(address);
+		} finally {
+			recycling.unlockRead(stamp);
+		}
+	}
+
+	private byte[] read(long address) {
+		int id = (int) (address >>> 32);
+		int offset = (int) address;
+
+		Segment segment = segments[Math.floorMod(id, segments.length)];
+		if (segment == null || segment.id != id) {
+			return null;
+		}
+
+		ByteBuffer buffer = segment.buffer.duplicate();
+		int length = buffer.getInt(offset);
+		if (length < 0 || offset + Integer.BYTES + length > segmentSize) {
+			return null; // torn by a concurrent recycle, validation throws it away
+		}
+
+		byte[] value = new byte[length];
+		buffer.position(offset + Integer.BYTES);
+		buffer.get(value);
+		return value;
+	}
+
+	private Segment roll() {
+		int id = current == null ? 0 : current.id + 1;
+		int slot = Math.floorMod(id, segments.length);
+
+		Segment segment = segments[slot];
+		if (segment == null) {
+			segment = map(slot);
+			segment.id = id;
+			segments[slot] = segment;
+		} else {
+			long stamp = recycling.writeLock();
+			try {
+				evict(segment);
+				segment.id = id;
+				segment.position = 0;
+			} finally {
+				recycling.unlockWrite(stamp);
+			}
+		}
+
+		current = segment;
+		return segment;
+	}
+
+	private void evict(Segment segment) {
+		for (Location location : segment.locations) {
+			Long address = index.get(location);
+			if (address != null && (int) (address >>> 32) == segment.id && index.remove(location, address)) {
+				evictions.incrementAndGet();
+				evictionListener.accept(location);
+			}
+		}
+		segment.locations.clear();
+	}
+
+	private Segment map(int slot) {
+		Path file = directory.resolve("segment-" + slot + ".log");
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.setLength(segmentSize);
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // outlives the channel
+			file.toFile().deleteOnExit();
+			return new Segment(buffer);
+		} catch (IOException exception) {
+			throw new UncheckedIOException("Could not map off-heap cache segment " + file, exception);
+		}
+	}
+
+	private static long address(int id, int offset) {
+		return ((long) id << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		List<Location> dropped = new ArrayList<>(index.keySet());
+		index.clear();
+		dropped.forEach(evictionListener);
+
+		for (int slot = 0; slot < segments.length; slot++) {
+			segments[slot] = null; // unmapped when collected
+			delete(directory.resolve("segment-" + slot + ".log"));
+		}
+		delete(directory);
+	}
+
+	private void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ignore) {
+			// still mapped on some platforms, deleteOnExit is the fallback
+		}
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("name", name)
+				.add("directory", directory)
+				.add("segmentSize", segmentSize)
+				.add("segments", segments.length)
+				.add("size", index.size())
+				.toString();
+	}
+
+	private static final class Segment {
+		final MappedByteBuffer buffer;
+		final List<Location> locations = new ArrayList<>();
+		volatile int id;
+		int position;
+
+		Segment(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.ulfric.dragoon.rethink.Location;
+
+final class UnboundedDocumentCache<V> implements DocumentCache<V> {
+
+	private final Map<Location, V> entries = new ConcurrentHashMap<>(2);
+
+	@Override
+	public V get(Location location) {
+		return entries.get(location);
+	}
+
+	@Override
+	public V computeIfAbsent(Location location, Function<Location, V> loader) {
+		return entries.computeIfAbsent(location, loader);
+	}
+
+	@Override
+	public V remove(Location location) {
+		return entries.remove(location);
+	}
+
+	@Override
+	public void reweigh(Location location) {
+	}
+
+	@Override
+	public void forEach(BiConsumer<Location, V> consumer) {
+		entries.forEach(consumer);
+	}
+
+	@Override
+	public long size() {
+		return entries.size();
+	}
+
+	@Override
+	public void clear() {
+		entries.clear();
+	}
+
+}
@@ -0,0 +1,7 @@
+package com.ulfric.dragoon.rethink.cache;
+
+public interface Weighted {
+
+	int weight();
+
+}
@@ -0,0 +1,100 @@
+package com.ulfric.dragoon.rethink.codec;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.rethinkdb.model.MapObject;
+
+public final class DocumentCodec<T> {
+
+	private final Gson gson;
+	private final Class<T> type;
+
+	public DocumentCodec(Gson gson, Class<T> type) {
+		Objects.requireNonNull(gson, "gson");
+		Objects.requireNonNull(type, "type");
+
+		this.gson = gson;
+		this.type = type;
+	}
+
+	public T decode(Map<String, Object> document) {
+		return read(document, type);
+	}
+
+	public <R> R read(Object document, Class<R> type) {
+		if (document == null) {
+			return null;
+		}
+
+		return gson.fromJson(toTree(document), type);
+	}
+
+	public MapObject encode(T value, String id) {
+		MapJsonWriter writer = new MapJsonWriter();
+		gson.toJson(value, type, writer);
+
+		Object encoded = writer.get();
+		MapObject document = encoded instanceof MapObject ? (MapObject) encoded : new MapObject();
+
+		if (id != null) {
+			document.put("id", id);
+		}
+		return document;
+	}
+
+	public Object fromTree(JsonElement tree) {
+		MapJsonWriter writer = new MapJsonWriter();
+		gson.toJson(tree, writer);
+		return writer.get();
+	}
+
+	public static JsonElement toTree(Object value) {
+		if (value == null) {
+			return JsonNull.INSTANCE;
+		}
+
+		if (value instanceof Map) {
+			JsonObject object = new JsonObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				object.add(String.valueOf(entry.getKey()), toTree(entry.getValue()));
+			}
+			return object;
+		}
+
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			JsonArray array = new JsonArray();
+			for (Object element : list) {
+				array.add(toTree(element));
+			}
+			return array;
+		}
+
+		if (value instanceof String) {
+			return new JsonPrimitive((String) value);
+		}
+
+		if (value instanceof Number) {
+			return new JsonPrimitive((Number) value);
+		}
+
+		if (value instanceof Boolean) {
+			return new JsonPrimitive((Boolean) value);
+		}
+
+		if (value instanceof JsonElement) {
+			return (JsonElement) value;
+		}
+
+		return new JsonPrimitive(value.toString());
+	}
+
+}
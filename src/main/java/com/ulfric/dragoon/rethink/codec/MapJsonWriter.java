@@ -0,0 +1,192 @@
+package com.ulfric.dragoon.rethink.codec;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonWriter;
+import com.rethinkdb.model.MapObject;
+
+final class MapJsonWriter extends JsonWriter { // mirrors gson's JsonTreeWriter, but builds driver-native maps and lists
+
+	private static final Writer UNWRITABLE_WRITER = new Writer() {
+		@Override
+		public void write(char[] buffer, int offset, int counter) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void flush() {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	private static final Object NULL = new Object();
+
+	private final List<Object> stack = new ArrayList<>();
+	private String pendingName;
+	private Object product = NULL;
+
+	MapJsonWriter() {
+		super(UNWRITABLE_WRITER);
+	}
+
+	Object get() {
+		if (!stack.isEmpty()) {
+			throw new IllegalStateException("Expected one JSON element but was " + stack);
+		}
+
+		return product == NULL ? null : product;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void put(Object value) {
+		if (pendingName != null) {
+			if (value != null || getSerializeNulls()) {
+				((Map<Object, Object>) peek()).put(pendingName, value);
+			}
+			pendingName = null;
+		} else if (stack.isEmpty()) {
+			product = value;
+		} else {
+			Object container = peek();
+			if (!(container instanceof List)) {
+				throw new IllegalStateException();
+			}
+			((List<Object>) container).add(value);
+		}
+	}
+
+	private Object peek() {
+		return stack.get(stack.size() - 1);
+	}
+
+	@Override
+	public JsonWriter beginArray() {
+		List<Object> array = new ArrayList<>();
+		put(array);
+		stack.add(array);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() {
+		if (stack.isEmpty() || pendingName != null || !(peek() instanceof List)) {
+			throw new IllegalStateException();
+		}
+
+		stack.remove(stack.size() - 1);
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginObject() {
+		MapObject object = new MapObject();
+		put(object);
+		stack.add(object);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() {
+		if (stack.isEmpty() || pendingName != null || !(peek() instanceof Map)) {
+			throw new IllegalStateException();
+		}
+
+		stack.remove(stack.size() - 1);
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) {
+		if (stack.isEmpty() || pendingName != null || !(peek() instanceof Map)) {
+			throw new IllegalStateException();
+		}
+
+		pendingName = name;
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) {
+		put(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter nullValue() {
+		put(null);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) {
+		put(value);
+		return this;
+	}
+
+	public JsonWriter value(Boolean value) {
+		put(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) {
+		if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+			throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+		}
+
+		put(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) {
+		put(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) {
+		if (value == null) {
+			return nullValue();
+		}
+
+		if (value instanceof LazilyParsedNumber) {
+			String raw = value.toString();
+			put(raw.indexOf('.') < 0 && raw.indexOf('e') < 0 && raw.indexOf('E') < 0
+					? (Number) value.longValue()
+					: (Number) value.doubleValue());
+			return this;
+		}
+
+		if (!isLenient()) {
+			double asDouble = value.doubleValue();
+			if (Double.isNaN(asDouble) || Double.isInfinite(asDouble)) {
+				throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+			}
+		}
+
+		put(value);
+		return this;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+		if (!stack.isEmpty()) {
+			throw new IllegalStateException("Incomplete document");
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.ulfric.dragoon.rethink.jms;
 
+import java.util.List;
+
 import com.ulfric.dragoon.activemq.event.Event;
 import com.ulfric.dragoon.rethink.Location;
 
@@ -7,6 +9,12 @@ public class DocumentUpdateEvent extends Event {
 
 	private Location location;
 	private Long timestamp;
+	private String origin;
+	private Boolean deleted;
+	private String value;
+	private String patch;
+	private Long base; // JsonMergePatch.hash of what the writer held before this write
+	private List<DocumentUpdateEvent> batch;
 
 	public Location getLocation() {
 		return location;
@@ -24,4 +32,52 @@ public class DocumentUpdateEvent extends Event {
 		this.timestamp = timestamp;
 	}
 
-}
\ No newline at end of file
+	public String getOrigin() {
+		return origin;
+	}
+
+	public void setOrigin(String origin) {
+		this.origin = origin;
+	}
+
+	public Boolean getDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(Boolean deleted) {
+		this.deleted = deleted;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	public String getPatch() {
+		return patch;
+	}
+
+	public void setPatch(String patch) {
+		this.patch = patch;
+	}
+
+	public Long getBase() {
+		return base;
+	}
+
+	public void setBase(Long base) {
+		this.base = base;
+	}
+
+	public List<DocumentUpdateEvent> getBatch() {
+		return batch;
+	}
+
+	public void setBatch(List<DocumentUpdateEvent> batch) {
+		this.batch = batch;
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.ulfric.dragoon.rethink.jms;
+
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+public class JsonMergePatch { // RFC 7386
+
+	public static JsonElement diff(JsonElement source, JsonElement target) {
+		if (target == null || !target.isJsonObject() || source == null || !source.isJsonObject()) {
+			return target == null ? JsonNull.INSTANCE : target;
+		}
+
+		JsonObject from = source.getAsJsonObject();
+		JsonObject to = target.getAsJsonObject();
+		JsonObject patch = new JsonObject();
+
+		for (Map.Entry<String, JsonElement> entry : from.entrySet()) {
+			if (!to.has(entry.getKey())) {
+				patch.add(entry.getKey(), JsonNull.INSTANCE);
+			}
+		}
+
+		for (Map.Entry<String, JsonElement> entry : to.entrySet()) {
+			String key = entry.getKey();
+			JsonElement value = entry.getValue();
+			JsonElement previous = from.get(key);
+
+			if (value.equals(previous)) {
+				continue;
+			}
+
+			if (value.isJsonObject() && previous != null && previous.isJsonObject()) {
+				patch.add(key, diff(previous, value));
+			} else {
+				patch.add(key, value);
+			}
+		}
+
+		return patch;
+	}
+
+	public static JsonElement apply(JsonElement target, JsonElement patch) {
+		if (patch == null || !patch.isJsonObject()) {
+			return patch == null ? JsonNull.INSTANCE : patch;
+		}
+
+		JsonObject result = new JsonObject();
+		if (target != null && target.isJsonObject()) {
+			for (Map.Entry<String, JsonElement> entry : target.getAsJsonObject().entrySet()) {
+				result.add(entry.getKey(), entry.getValue());
+			}
+		}
+
+		for (Map.Entry<String, JsonElement> entry : patch.getAsJsonObject().entrySet()) {
+			String key = entry.getKey();
+			JsonElement value = entry.getValue();
+
+			if (value.isJsonNull()) {
+				result.remove(key);
+			} else {
+				result.add(key, apply(result.get(key), value));
+			}
+		}
+
+		return result;
+	}
+
+	public static long hash(JsonElement json) { // stable across field order and number representation, unlike JsonElement.hashCode
+		if (json == null || json.isJsonNull()) {
+			return 0;
+		}
+
+		if (json.isJsonObject()) {
+			long hash = 1;
+			for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+				hash += mix(entry.getKey().hashCode() * 31L + hash(entry.getValue()));
+			}
+			return mix(hash);
+		}
+
+		if (json.isJsonArray()) {
+			long hash = 2;
+			for (JsonElement element : json.getAsJsonArray()) {
+				hash = hash * 31 + hash(element);
+			}
+			return mix(hash);
+		}
+
+		JsonPrimitive primitive = json.getAsJsonPrimitive();
+		if (primitive.isNumber()) {
+			return mix(Double.doubleToLongBits(primitive.getAsDouble()));
+		}
+		if (primitive.isBoolean()) {
+			return primitive.getAsBoolean() ? 3 : 4;
+		}
+		return mix(primitive.getAsString().hashCode());
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	public static boolean isEmpty(JsonElement patch) {
+		return patch != null && patch.isJsonObject() && patch.getAsJsonObject().entrySet().isEmpty();
+	}
+
+	private JsonMergePatch() {
+	}
+
+}
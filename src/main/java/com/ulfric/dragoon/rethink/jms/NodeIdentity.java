@@ -0,0 +1,16 @@
+package com.ulfric.dragoon.rethink.jms;
+
+import java.util.UUID;
+
+public class NodeIdentity {
+
+	private static final String NODE_ID = UUID.randomUUID().toString();
+
+	public static String get() {
+		return NODE_ID;
+	}
+
+	private NodeIdentity() {
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.ulfric.dragoon.rethink.jms;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ulfric.dragoon.activemq.event.EventPublisher;
+import com.ulfric.dragoon.rethink.Location;
+import com.ulfric.dragoon.rethink.metrics.Metrics;
+
+public class RethinkPublisher implements AutoCloseable {
+
+	private final EventPublisher<DocumentUpdateEvent> backing;
+	private final long window;
+	private final int maximumEvents;
+	private final Map<Location, DocumentUpdateEvent> pending = new LinkedHashMap<>();
+	private final ScheduledExecutorService scheduler;
+	private final Metrics metrics;
+	private final Object sending = new Object();
+	private boolean scheduled;
+
+	public RethinkPublisher(EventPublisher<DocumentUpdateEvent> backing) {
+		this(backing, 0, 1);
+	}
+
+	public RethinkPublisher(EventPublisher<DocumentUpdateEvent> backing, long window, int maximumEvents) {
+		this(backing, window, maximumEvents, Metrics.noop());
+	}
+
+	public RethinkPublisher(EventPublisher<DocumentUpdateEvent> backing, long window, int maximumEvents, Metrics metrics) {
+		Objects.requireNonNull(backing, "backing");
+		Objects.requireNonNull(metrics, "metrics");
+
+		this.backing = backing;
+		this.window = window;
+		this.maximumEvents = Math.max(1, maximumEvents);
+		this.metrics = metrics;
+		metrics.gauge("jms.publish.pending", this::getPendingCount);
+
+		if (window > 0) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "rethinkdb-publisher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.scheduler = null;
+		}
+	}
+
+	public void send(DocumentUpdateEvent event) {
+		Objects.requireNonNull(event, "event");
+
+		if (scheduler == null) {
+			publish(event);
+			return;
+		}
+
+		List<DocumentUpdateEvent> unkeyed = new ArrayList<>(0);
+		boolean full;
+
+		synchronized (pending) {
+			buffer(event, unkeyed);
+
+			full = pending.size() >= maximumEvents;
+			if (!full && !scheduled && !pending.isEmpty()) {
+				scheduled = true;
+				scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		unkeyed.forEach(this::publish);
+
+		if (full) {
+			flush();
+		}
+	}
+
+	private void buffer(DocumentUpdateEvent event, List<DocumentUpdateEvent> unkeyed) {
+		List<DocumentUpdateEvent> batch = event.getBatch();
+		if (batch != null) {
+			batch.forEach(nested -> buffer(nested, unkeyed));
+		}
+
+		Location location = event.getLocation();
+		if (location == null) {
+			if (batch == null) {
+				unkeyed.add(event);
+			}
+			return;
+		}
+
+		DocumentUpdateEvent previous = pending.remove(location);
+		if (previous != null) {
+			event.setBase(previous.getBase()); // receivers never see the dropped event, so the coalesced one starts where it did
+			if (event.getPatch() != null) {
+				event.setPatch(null); // patches do not compose across dropped events, receivers fall back to a read
+			}
+		}
+
+		pending.put(location, event);
+	}
+
+	public void flush() {
+		synchronized (sending) { // held from taking a batch until it is sent, so two batches holding one location can't swap
+			List<DocumentUpdateEvent> events;
+
+			synchronized (pending) {
+				scheduled = false;
+
+				if (pending.isEmpty()) {
+					return;
+				}
+
+				events = new ArrayList<>(pending.values());
+				pending.clear();
+			}
+
+			if (events.size() == 1) {
+				publish(events.get(0));
+				return;
+			}
+
+			long now = System.currentTimeMillis();
+			events.forEach(event -> recordLag(event, now));
+
+			DocumentUpdateEvent compound = new DocumentUpdateEvent();
+			compound.setTimestamp(now);
+			compound.setBatch(events);
+
+			backing.send(compound);
+		}
+	}
+
+	private void publish(DocumentUpdateEvent event) {
+		recordLag(event, System.currentTimeMillis());
+		backing.send(event);
+	}
+
+	private void recordLag(DocumentUpdateEvent event, long now) {
+		Long timestamp = event.getTimestamp();
+		if (timestamp != null) {
+			metrics.record("jms.publish.lag", TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - timestamp)));
+		}
+	}
+
+	public int getPendingCount() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+
+		flush();
+	}
+
+}
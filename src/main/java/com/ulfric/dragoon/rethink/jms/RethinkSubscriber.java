@@ -2,59 +2,178 @@ package com.ulfric.dragoon.rethink.jms;
 
 import com.ulfric.dragoon.activemq.event.EventSubscriber;
 import com.ulfric.dragoon.rethink.Location;
+import com.ulfric.dragoon.rethink.metrics.Metrics;
 
 import javax.jms.MessageConsumer;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class RethinkSubscriber extends EventSubscriber<DocumentUpdateEvent> {
 
-	private final Map<Location, List<Consumer<DocumentUpdateEvent>>> listeners = new HashMap<>();
+	private final Consumer<DocumentUpdateEvent> listener = new RethinkListener();
+	private final Map<Location, List<Consumer<DocumentUpdateEvent>>> listeners = new ConcurrentHashMap<>();
+	private final ExecutorService[] lanes;
+	private final Logger logger;
+	private final Metrics metrics;
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicLong maximumDispatchLag = new AtomicLong();
+	private volatile long lastDispatchLag;
 
 	public RethinkSubscriber(MessageConsumer consumer) {
+		this(consumer, Runtime.getRuntime().availableProcessors(), null);
+	}
+
+	public RethinkSubscriber(MessageConsumer consumer, int dispatchThreads, Logger logger) {
+		this(consumer, dispatchThreads, logger, Metrics.noop());
+	}
+
+	public RethinkSubscriber(MessageConsumer consumer, int dispatchThreads, Logger logger, Metrics metrics) {
 		super(consumer, DocumentUpdateEvent.class);
 
-		setListener(new RethinkListener());
+		Objects.requireNonNull(metrics, "metrics");
+
+		this.logger = logger;
+		this.metrics = metrics;
+		metrics.gauge("jms.dispatch.queue", this::getQueueDepth);
+		this.lanes = new ExecutorService[Math.max(1, dispatchThreads)];
+		for (int lane = 0; lane < lanes.length; lane++) {
+			String name = "rethinkdb-dispatch-" + lane;
+			lanes[lane] = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		setListener(listener);
 	}
 
 	public void addListener(Location location, Consumer<DocumentUpdateEvent> listener) {
-		listeners.computeIfAbsent(location, ignore -> new ArrayList<>()).add(listener);
+		listeners.compute(location, (key, consumers) -> {
+			if (consumers == null) {
+				consumers = new CopyOnWriteArrayList<>();
+			}
+			consumers.add(listener);
+			return consumers;
+		});
 	}
 
 	public void removeListener(Location location, Consumer<DocumentUpdateEvent> listener) {
-		List<Consumer<DocumentUpdateEvent>> consumers = this.listeners.get(location);
+		listeners.computeIfPresent(location, (key, consumers) -> {
+			consumers.remove(listener);
+			return consumers.isEmpty() ? null : consumers;
+		});
+	}
+
+	public void clearListeners(Location location) {
+		listeners.remove(location);
+	}
+
+	void receive(DocumentUpdateEvent event) { // lets benchmarks bypass the broker
+		listener.accept(event);
+	}
+
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	public long getLastDispatchLag(TimeUnit unit) {
+		return unit.convert(lastDispatchLag, TimeUnit.NANOSECONDS);
+	}
+
+	public long getMaximumDispatchLag(TimeUnit unit) {
+		return unit.convert(maximumDispatchLag.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public void stopDispatching() {
+		for (ExecutorService lane : lanes) {
+			lane.shutdown();
+		}
+	}
+
+	private void dispatch(Location location, DocumentUpdateEvent event) {
+		ExecutorService lane = lanes[(location.hashCode() & Integer.MAX_VALUE) % lanes.length];
+		long enqueued = System.nanoTime();
+
+		queueDepth.incrementAndGet();
+		try {
+			lane.execute(() -> {
+				queueDepth.decrementAndGet();
+				recordLag(System.nanoTime() - enqueued);
+
+				deliver(location, event);
+			});
+		} catch (RuntimeException rejected) {
+			queueDepth.decrementAndGet();
+			log("Dropped update for " + location + ", dispatching has stopped", rejected);
+		}
+	}
+
+	private void recordLag(long lag) {
+		lastDispatchLag = lag;
+		maximumDispatchLag.accumulateAndGet(lag, Math::max);
+		metrics.record("jms.dispatch.lag", lag);
+	}
+
+	private void deliver(Location location, DocumentUpdateEvent event) {
+		List<Consumer<DocumentUpdateEvent>> consumers = listeners.get(location);
 
 		if (consumers == null) {
 			return;
 		}
 
-		consumers.remove(listener);
+		for (Consumer<DocumentUpdateEvent> consumer : consumers) {
+			try {
+				consumer.accept(event);
+			} catch (RuntimeException exception) {
+				log("Listener failed to handle update for " + location, exception);
+			}
+		}
 	}
 
-	public void clearListeners(Location location) {
-		listeners.remove(location);
+	private void log(String message, Throwable thrown) {
+		if (logger != null) {
+			logger.log(Level.SEVERE, message, thrown);
+		}
 	}
 
 	private class RethinkListener implements Consumer<DocumentUpdateEvent> {
 		@Override
 		public void accept(DocumentUpdateEvent event) {
+			List<DocumentUpdateEvent> batch = event.getBatch();
+			if (batch != null) {
+				batch.forEach(this);
+			}
+
 			Location location = event.getLocation();
 
 			if (location == null) {
 				return;
 			}
 
-			List<Consumer<DocumentUpdateEvent>> consumers = listeners.get(location);
-
-			if (consumers == null) {
+			if (!listeners.containsKey(location)) {
 				return;
 			}
 
-			consumers.forEach(consumer -> consumer.accept(event));
+			Long timestamp = event.getTimestamp();
+			if (timestamp != null) { // across nodes this includes clock skew
+				metrics.record("jms.receive.lag",
+						TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - timestamp)));
+			}
+
+			dispatch(location, event);
 		}
 	}
 
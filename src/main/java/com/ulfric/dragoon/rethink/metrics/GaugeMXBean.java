@@ -0,0 +1,7 @@
+package com.ulfric.dragoon.rethink.metrics;
+
+public interface GaugeMXBean {
+
+	long getValue();
+
+}
@@ -0,0 +1,77 @@
+package com.ulfric.dragoon.rethink.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+final class Histogram implements HistogramMXBean {
+
+	private static final int BUCKETS = 64; // bucket n holds values from 2^n up to 2^(n+1) nanoseconds
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong maximum = new AtomicLong();
+
+	void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(value == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(value));
+		count.increment();
+		total.add(value);
+		maximum.accumulateAndGet(value, Math::max);
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long count = getCount();
+		return count == 0 ? 0 : millis(total.sum()) / count;
+	}
+
+	@Override
+	public double getMaximumMillis() {
+		return millis(maximum.get());
+	}
+
+	@Override
+	public double get50thPercentileMillis() {
+		return percentile(0.5);
+	}
+
+	@Override
+	public double get95thPercentileMillis() {
+		return percentile(0.95);
+	}
+
+	@Override
+	public double get99thPercentileMillis() {
+		return percentile(0.99);
+	}
+
+	private double percentile(double quantile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(count * quantile);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += buckets.get(bucket);
+			if (seen >= rank) {
+				return Math.min(millis(1L << Math.min(bucket + 1, 62)), getMaximumMillis()); // upper bound of the bucket
+			}
+		}
+		return getMaximumMillis();
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+}
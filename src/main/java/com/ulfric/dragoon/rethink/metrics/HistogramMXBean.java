@@ -0,0 +1,17 @@
+package com.ulfric.dragoon.rethink.metrics;
+
+public interface HistogramMXBean {
+
+	long getCount();
+
+	double getMeanMillis();
+
+	double getMaximumMillis();
+
+	double get50thPercentileMillis();
+
+	double get95thPercentileMillis();
+
+	double get99thPercentileMillis();
+
+}
@@ -0,0 +1,138 @@
+package com.ulfric.dragoon.rethink.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class JmxMetrics implements Metrics, AutoCloseable {
+
+	public static final String DOMAIN = "com.ulfric.dragoon.rethink";
+
+	private final MBeanServer server;
+	private final Logger logger;
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+	private final Map<ObjectName, Object> registered = new ConcurrentHashMap<>();
+
+	public JmxMetrics(Logger logger) {
+		this(ManagementFactory.getPlatformMBeanServer(), logger);
+	}
+
+	public JmxMetrics(MBeanServer server, Logger logger) {
+		Objects.requireNonNull(server, "server");
+
+		this.server = server;
+		this.logger = logger;
+	}
+
+	@Override
+	public void record(String name, long nanos) {
+		histograms.computeIfAbsent(name, key -> register("Histogram", key, new Histogram())).record(nanos);
+	}
+
+	@Override
+	public void increment(String name, long amount) {
+		counters.computeIfAbsent(name, key -> register("Counter", key, new Counter())).count.add(amount);
+	}
+
+	@Override
+	public void gauge(String name, LongSupplier value) {
+		Objects.requireNonNull(value, "value");
+
+		gauges.compute(name, (key, gauge) -> {
+			if (gauge == null) {
+				return register("Gauge", key, new Gauge(value));
+			}
+			gauge.value = value; // latest registration wins
+			return gauge;
+		});
+	}
+
+	@Override
+	public void removeGauge(String name) {
+		gauges.computeIfPresent(name, (key, gauge) -> {
+			unregister("Gauge", key);
+			return null;
+		});
+	}
+
+	private <M> M register(String type, String name, M metric) {
+		try {
+			ObjectName objectName = objectName(type, name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(metric, objectName);
+			registered.put(objectName, metric);
+		} catch (JMException exception) {
+			log("Failed to register metric " + name, exception);
+		}
+		return metric;
+	}
+
+	private void unregister(String type, String name) {
+		try {
+			ObjectName objectName = objectName(type, name);
+			if (registered.remove(objectName) != null) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException exception) {
+			log("Failed to unregister metric " + name, exception);
+		}
+	}
+
+	private ObjectName objectName(String type, String name) throws JMException {
+		return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+	}
+
+	@Override
+	public void close() {
+		registered.keySet().forEach(name -> {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException exception) {
+				log("Failed to unregister metric " + name, exception);
+			}
+		});
+		registered.clear();
+	}
+
+	private void log(String message, Throwable thrown) {
+		if (logger != null) {
+			logger.log(Level.WARNING, message, thrown);
+		}
+	}
+
+	static final class Counter implements CounterMXBean {
+		final LongAdder count = new LongAdder();
+
+		@Override
+		public long getCount() {
+			return count.sum();
+		}
+	}
+
+	static final class Gauge implements GaugeMXBean {
+		volatile LongSupplier value;
+
+		Gauge(LongSupplier value) {
+			this.value = value;
+		}
+
+		@Override
+		public long getValue() {
+			return value.getAsLong();
+		}
+	}
+
+}
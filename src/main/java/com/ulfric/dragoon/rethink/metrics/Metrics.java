@@ -0,0 +1,31 @@
+package com.ulfric.dragoon.rethink.metrics;
+
+import java.util.function.LongSupplier;
+
+public interface Metrics {
+
+	static Metrics noop() {
+		return NoopMetrics.INSTANCE;
+	}
+
+	void record(String name, long nanos);
+
+	default void increment(String name) {
+		increment(name, 1);
+	}
+
+	void increment(String name, long amount);
+
+	void gauge(String name, LongSupplier value);
+
+	void removeGauge(String name);
+
+	default long start() {
+		return System.nanoTime();
+	}
+
+	default void stop(String name, long start) {
+		record(name, System.nanoTime() - start);
+	}
+
+}
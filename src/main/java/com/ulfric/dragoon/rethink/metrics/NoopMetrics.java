@@ -0,0 +1,34 @@
+package com.ulfric.dragoon.rethink.metrics;
+
+import java.util.function.LongSupplier;
+
+enum NoopMetrics implements Metrics {
+
+	INSTANCE;
+
+	@Override
+	public void record(String name, long nanos) {
+	}
+
+	@Override
+	public void increment(String name, long amount) {
+	}
+
+	@Override
+	public void gauge(String name, LongSupplier value) {
+	}
+
+	@Override
+	public void removeGauge(String name) {
+	}
+
+	@Override
+	public long start() {
+		return 0;
+	}
+
+	@Override
+	public void stop(String name, long start) {
+	}
+
+}
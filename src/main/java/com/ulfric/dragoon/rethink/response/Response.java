@@ -20,6 +20,8 @@ public class Response {
 	private Integer tablesCreated;
 	@SerializedName("generated_keys")
 	private List<UUID> generatedKeys;
+	@SerializedName("first_error")
+	private String firstError;
 
 	public Integer getDeleted() {
 		return deleted;
@@ -101,4 +103,12 @@ public class Response {
 		this.generatedKeys = generatedKeys;
 	}
 
+	public String getFirstError() {
+		return firstError;
+	}
+
+	public void setFirstError(String firstError) {
+		this.firstError = firstError;
+	}
+
 }
@@ -1,5 +1,9 @@
 package com.ulfric.dragoon.rethink.response;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 public class ResponseHelper {
 
 	public static boolean changedData(Response response) {
@@ -14,6 +18,48 @@ public class ResponseHelper {
 				|| isPositive(response.getTablesCreated());
 	}
 
+	public static boolean deletedData(Response response) {
+		return response != null && isPositive(response.getDeleted());
+	}
+
+	public static boolean failed(Response response) {
+		return response != null && isPositive(response.getErrors());
+	}
+
+	public static void add(Response total, Response response) {
+		if (response == null) {
+			return;
+		}
+
+		total.setDeleted(sum(total.getDeleted(), response.getDeleted()));
+		total.setInserted(sum(total.getInserted(), response.getInserted()));
+		total.setUnchanged(sum(total.getUnchanged(), response.getUnchanged()));
+		total.setReplaced(sum(total.getReplaced(), response.getReplaced()));
+		total.setErrors(sum(total.getErrors(), response.getErrors()));
+		total.setSkipped(sum(total.getSkipped(), response.getSkipped()));
+		total.setSynced(sum(total.getSynced(), response.getSynced()));
+		total.setDatabasesCreated(sum(total.getDatabasesCreated(), response.getDatabasesCreated()));
+		total.setTablesCreated(sum(total.getTablesCreated(), response.getTablesCreated()));
+
+		if (total.getFirstError() == null) {
+			total.setFirstError(response.getFirstError());
+		}
+
+		if (response.getGeneratedKeys() != null) {
+			List<UUID> keys = total.getGeneratedKeys() == null ? new ArrayList<>() : total.getGeneratedKeys();
+			keys.addAll(response.getGeneratedKeys());
+			total.setGeneratedKeys(keys);
+		}
+	}
+
+	private static Integer sum(Integer total, Integer value) {
+		if (value == null) {
+			return total;
+		}
+
+		return total == null ? value : total + value;
+	}
+
 	private static boolean isPositive(Integer value) {
 		return value != null && value > 0;
 	}
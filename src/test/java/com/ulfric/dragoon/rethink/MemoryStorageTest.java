@@ -0,0 +1,331 @@
+package com.ulfric.dragoon.rethink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.ulfric.dragoon.rethink.response.Response;
+
+public class MemoryStorageTest {
+
+	private static final Location TABLE = Location.builder().database("test").table("people").build();
+
+	private MemoryBackend backend;
+	private Storage storage;
+
+	@Before
+	public void setup() {
+		backend = new MemoryBackend();
+		storage = backend.open(TABLE, StoreSettings.defaults(), Person.class.getAnnotationsByType(Index.class));
+	}
+
+	@After
+	public void teardown() {
+		backend.close();
+	}
+
+	@Test
+	public void testReplaceInsertsThenReplaces() {
+		assertEquals(Integer.valueOf(1), storage.replace(TABLE.withKey("a"), person("ann", 30)).getInserted());
+		assertEquals(Integer.valueOf(1), storage.replace(TABLE.withKey("a"), person("ann", 31)).getReplaced());
+		assertEquals(Integer.valueOf(1), storage.replace(TABLE.withKey("a"), person("ann", 31)).getUnchanged());
+
+		Map<String, Object> stored = storage.get(TABLE.withKey("a"));
+		assertEquals("a", stored.get("id"));
+		assertEquals(31L, stored.get("age")); // numbers are normalized the way they come back from the driver
+		assertEquals(1, backend.size(TABLE));
+	}
+
+	@Test
+	public void testStoredDocumentsAreCopies() {
+		Map<String, Object> document = person("ann", 30);
+		storage.replace(TABLE.withKey("a"), document);
+
+		document.put("age", 99);
+
+		assertEquals(30L, storage.get(TABLE.withKey("a")).get("age"));
+	}
+
+	@Test
+	public void testPatchSkipsMissingDocuments() {
+		JsonObject patch = new JsonObject();
+		patch.addProperty("age", 40);
+
+		assertEquals(Integer.valueOf(1), storage.patch(TABLE.withKey("a"), patch).getSkipped());
+		assertNull(storage.get(TABLE.withKey("a")));
+	}
+
+	@Test
+	public void testPatchMergesAndRemovesNulledFields() {
+		Map<String, Object> document = person("ann", 30);
+		Map<String, Object> address = new LinkedHashMap<>();
+		address.put("city", "x");
+		address.put("zip", "1");
+		document.put("address", address);
+		storage.replace(TABLE.withKey("a"), document);
+
+		JsonObject nested = new JsonObject();
+		nested.addProperty("city", "y");
+		JsonObject patch = new JsonObject();
+		patch.addProperty("age", 31);
+		patch.add("name", JsonNull.INSTANCE);
+		patch.add("address", nested);
+
+		assertEquals(Integer.valueOf(1), storage.patch(TABLE.withKey("a"), patch).getReplaced());
+
+		Map<String, Object> stored = storage.get(TABLE.withKey("a"));
+		assertFalse(stored.containsKey("name"));
+		assertEquals(31L, stored.get("age"));
+		Map<String, Object> expected = new LinkedHashMap<>();
+		expected.put("city", "y");
+		expected.put("zip", "1");
+		assertEquals(expected, stored.get("address"));
+	}
+
+	@Test
+	public void testUpdateSetsIncrementsAndAppends() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		List<Map<String, Object>> changed = new ArrayList<>();
+
+		Update update = Update.builder()
+				.set("name", "anne")
+				.increment("age", 2)
+				.append("tags", "x")
+				.build();
+		assertEquals(Integer.valueOf(1), storage.update(TABLE.withKey("a"), update, changed::add).getReplaced());
+
+		Map<String, Object> stored = storage.get(TABLE.withKey("a"));
+		assertEquals("anne", stored.get("name"));
+		assertEquals(32L, stored.get("age"));
+		assertEquals(Arrays.asList("x"), stored.get("tags"));
+		assertEquals(Arrays.asList(stored), changed);
+	}
+
+	@Test
+	public void testUpdateSkipsMissingDocuments() {
+		List<Map<String, Object>> changed = new ArrayList<>();
+
+		assertEquals(Integer.valueOf(1), storage.update(TABLE.withKey("a"), Updates.increment("age", 1), changed::add).getSkipped());
+		assertNull(storage.get(TABLE.withKey("a")));
+		assertTrue(changed.isEmpty());
+	}
+
+	@Test
+	public void testUpdateChecksTheVersion() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		Update update = Updates.ifVersion("version", 0, Updates.set("age", 31));
+
+		assertEquals(Integer.valueOf(1), storage.update(TABLE.withKey("a"), update, ignore -> { }).getReplaced());
+		assertEquals(1L, storage.get(TABLE.withKey("a")).get("version"));
+
+		Response stale = storage.update(TABLE.withKey("a"), update, ignore -> { });
+		assertEquals(Integer.valueOf(1), stale.getErrors());
+		assertEquals("Expected version to be 0", stale.getFirstError());
+		assertEquals(31L, storage.get(TABLE.withKey("a")).get("age"));
+	}
+
+	@Test
+	public void testIncrementingANonNumberFails() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+
+		assertEquals(Integer.valueOf(1), storage.update(TABLE.withKey("a"), Updates.increment("name", 1), ignore -> { }).getErrors());
+		assertEquals("ann", storage.get(TABLE.withKey("a")).get("name"));
+	}
+
+	@Test
+	public void testDelete() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+
+		assertEquals(Integer.valueOf(1), storage.delete(TABLE.withKey("a")).getDeleted());
+		assertEquals(Integer.valueOf(1), storage.delete(TABLE.withKey("a")).getSkipped());
+		assertNull(storage.get(TABLE.withKey("a")));
+	}
+
+	@Test
+	public void testInsertAllAndDeleteAllTotal() {
+		Map<String, Object> ann = person("ann", 30);
+		ann.put("id", "a");
+		Map<String, Object> bob = person("bob", 40);
+		bob.put("id", "b");
+
+		assertEquals(Integer.valueOf(2), storage.insertAll(TABLE, Arrays.asList(ann, bob)).getInserted());
+
+		Response deleted = storage.deleteAll(TABLE, new Object[] { "a", "b", "c" });
+		assertEquals(Integer.valueOf(2), deleted.getDeleted());
+		assertEquals(Integer.valueOf(1), deleted.getSkipped());
+		assertEquals(0, backend.size(TABLE));
+	}
+
+	@Test
+	public void testFeedSeesOldAndNewValues() {
+		List<Map<String, Object>> changes = new ArrayList<>();
+		Storage.Feed feed = storage.follow(changes::add, () -> { });
+
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		storage.replace(TABLE.withKey("a"), person("ann", 30)); // unchanged writes publish nothing
+		storage.delete(TABLE.withKey("a"));
+		feed.close();
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+
+		assertEquals(2, changes.size());
+		assertNull(changes.get(0).get("old_val"));
+		assertEquals("a", value(changes.get(0), "new_val").get("id"));
+		assertEquals("a", value(changes.get(1), "old_val").get("id"));
+		assertNull(changes.get(1).get("new_val"));
+	}
+
+	@Test
+	public void testGetAllByIndex() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+		storage.replace(TABLE.withKey("c"), person("cat", 30));
+
+		assertEquals(Arrays.asList("a", "c"), ids(consumer -> storage.getAllByIndex(TABLE, "age", new Object[] { 30 }, consumer)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUndeclaredIndexesAreRejected() {
+		storage.getAllByIndex(TABLE, "missing", new Object[] { 1 }, ignore -> { });
+	}
+
+	@Test
+	public void testBetweenOnThePrimaryKeyIsHalfOpen() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+		storage.replace(TABLE.withKey("c"), person("cat", 50));
+
+		assertEquals(Arrays.asList("a", "b"), ids(consumer -> storage.between(TABLE, null, "a", "c", consumer)));
+		assertEquals(Arrays.asList("b", "c"), ids(consumer -> storage.between(TABLE, "id", "b", null, consumer)));
+	}
+
+	@Test
+	public void testBetweenOnASecondaryIndex() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+		storage.replace(TABLE.withKey("c"), person("cat", 50));
+
+		assertEquals(Arrays.asList("a", "b"), ids(consumer -> storage.between(TABLE, "age", 30, 50, consumer)));
+	}
+
+	@Test
+	public void testFindFiltersOrdersAndLimits() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+		storage.replace(TABLE.withKey("c"), person("cat", 50));
+		storage.replace(TABLE.withKey("d"), person("dan", 20));
+
+		Query query = Query.builder()
+				.where("age", Comparison.GREATER_OR_EQUAL, 30)
+				.orderByDescending("age")
+				.limit(2)
+				.build();
+
+		assertEquals(Arrays.asList("c", "b"), ids(consumer -> storage.find(TABLE, query, consumer)));
+		assertEquals(2, storage.count(TABLE, query));
+	}
+
+	@Test
+	public void testFindSkipsDocumentsMissingTheField() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		Map<String, Object> ageless = new LinkedHashMap<>();
+		ageless.put("name", "bob");
+		storage.replace(TABLE.withKey("b"), ageless);
+
+		Query query = Query.builder().where("age", Comparison.NOT_EQUAL, 40).build();
+
+		assertEquals(Arrays.asList("a"), ids(consumer -> storage.find(TABLE, query, consumer)));
+	}
+
+	@Test
+	public void testFindWithinARange() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+		storage.replace(TABLE.withKey("c"), person("cat", 50));
+
+		Query query = Query.builder()
+				.between("age", 30, 50)
+				.where("name", Comparison.NOT_EQUAL, "ann")
+				.build();
+
+		assertEquals(Arrays.asList("b"), ids(consumer -> storage.find(TABLE, query, consumer)));
+	}
+
+	@Test
+	public void testFindContains() {
+		Map<String, Object> tagged = person("ann", 30);
+		tagged.put("tags", Arrays.asList("x", "y"));
+		storage.replace(TABLE.withKey("a"), tagged);
+		storage.replace(TABLE.withKey("b"), person("bob", 40));
+
+		Query query = Query.builder().where("tags", Comparison.CONTAINS, "y").build();
+
+		assertEquals(Arrays.asList("a"), ids(consumer -> storage.find(TABLE, query, consumer)));
+	}
+
+	@Test
+	public void testFindPlucksButKeepsTheId() {
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+
+		List<Map<String, Object>> found = new ArrayList<>();
+		storage.find(TABLE, Query.builder().pluck("name").build(), found::add);
+
+		Map<String, Object> expected = new LinkedHashMap<>();
+		expected.put("id", "a");
+		expected.put("name", "ann");
+		assertEquals(Arrays.asList(expected), found);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRawFiltersAreRejected() {
+		Query query = Query.builder().filter(row -> row.g("age").gt(30)).build();
+
+		storage.find(TABLE, query, ignore -> { });
+	}
+
+	@Test
+	public void testTablesAreIsolated() {
+		Location other = Location.builder().database("test").table("other").build();
+		storage.replace(TABLE.withKey("a"), person("ann", 30));
+
+		assertNull(backend.open(other, StoreSettings.defaults()).get(other.withKey("a")));
+		assertEquals(0, backend.size(other));
+	}
+
+	private static List<Object> ids(Consumer<Consumer<Map<String, Object>>> source) {
+		List<Object> ids = new ArrayList<>();
+		source.accept(document -> ids.add(document.get("id")));
+		return ids;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> value(Map<String, Object> change, String field) {
+		return (Map<String, Object>) change.get(field);
+	}
+
+	private static Map<String, Object> person(String name, int age) {
+		Map<String, Object> person = new LinkedHashMap<>();
+		person.put("name", name);
+		person.put("age", age);
+		return person;
+	}
+
+	@Index("age")
+	@Index(value = "tags", multi = true)
+	private static final class Person {
+	}
+
+}
@@ -0,0 +1,218 @@
+package com.ulfric.dragoon.rethink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.ulfric.dragoon.ObjectFactory;
+import com.ulfric.dragoon.reflect.Instances;
+
+public class StoreTest {
+
+	private static final Location TABLE = Location.builder().database("test").table("people").build();
+
+	private final MemoryBackend backend = new MemoryBackend();
+	private Store<Person> store;
+
+	@After
+	public void teardown() {
+		if (store != null) {
+			store.close();
+		}
+		backend.close();
+	}
+
+	@Test
+	public void testInsertThenGet() {
+		store = store(StoreSettings.defaults());
+
+		store.insert(person("a", "ann", 30)).join();
+
+		assertEquals(1, backend.size(TABLE));
+		Instance<Person> instance = store.get(TABLE.withKey("a")).join();
+		assertEquals("ann", instance.get().getName());
+		assertEquals(30, instance.get().getAge());
+		assertSame(instance, store.get(TABLE.withKey("a")).join()); // served from the cache
+	}
+
+	@Test
+	public void testBareKeysUseTheDefaultTable() {
+		store = store(StoreSettings.defaults());
+
+		store.insert(person("a", "ann", 30)).join();
+
+		assertEquals("ann", store.get(Location.key("a")).join().get().getName());
+	}
+
+	@Test
+	public void testGetFillsAPlaceholderForMissingDocuments() {
+		store = store(StoreSettings.defaults());
+
+		Person missing = store.get(TABLE.withKey("a")).join().get();
+
+		assertNotNull(missing);
+		assertEquals(TABLE.withKey("a"), missing.getLocation());
+		assertNull(missing.getName());
+		assertEquals(0, backend.size(TABLE));
+	}
+
+	@Test
+	public void testDelete() {
+		store = store(StoreSettings.defaults());
+		store.insert(person("a", "ann", 30)).join();
+
+		assertEquals(Integer.valueOf(1), store.delete(TABLE.withKey("a")).join().getDeleted());
+
+		assertEquals(0, backend.size(TABLE));
+		assertNull(store.getFromDatabaseBypassingCache(TABLE.withKey("a")).join());
+	}
+
+	@Test
+	public void testPortableUpdate() {
+		store = store(StoreSettings.defaults());
+		store.insert(person("a", "ann", 30)).join();
+
+		store.update(TABLE.withKey("a"), Updates.increment("age", 2)).join();
+
+		assertEquals(32, store.getFromDatabaseBypassingCache(TABLE.withKey("a")).join().getAge());
+	}
+
+	@Test
+	public void testChangefeedAppliesWritesFromElsewhere() {
+		store = store(StoreSettings.builder().invalidation(InvalidationMode.CHANGEFEED).build());
+		store.insert(person("a", "ann", 30)).join();
+		Instance<Person> instance = store.get(TABLE.withKey("a")).join();
+
+		Storage elsewhere = backend.open(TABLE, StoreSettings.defaults());
+		Map<String, Object> document = new LinkedHashMap<>();
+		document.put("name", "anne");
+		document.put("age", 31);
+		elsewhere.replace(TABLE.withKey("a"), document);
+
+		assertEquals("anne", instance.get().getName());
+		assertEquals(31, instance.get().getAge());
+
+		elsewhere.delete(TABLE.withKey("a"));
+
+		assertNull(instance.get());
+	}
+
+	@Test
+	public void testChangefeedIgnoresDocumentsThatAreNotCached() {
+		store = store(StoreSettings.builder().invalidation(InvalidationMode.CHANGEFEED).build());
+
+		Map<String, Object> document = new LinkedHashMap<>();
+		document.put("name", "bob");
+		backend.open(TABLE, StoreSettings.defaults()).replace(TABLE.withKey("b"), document);
+
+		assertNull(store.getFromLocalCache(TABLE.withKey("b")));
+	}
+
+	@Test
+	public void testWriteBehindLandsOnFlush() {
+		store = store(writeBehind());
+
+		store.insert(person("a", "ann", 30));
+
+		assertEquals(0, backend.size(TABLE));
+		assertEquals(1, store.getWriteBehindQueueDepth());
+
+		store.flush().join();
+
+		assertEquals(1, backend.size(TABLE));
+		assertEquals(0, store.getWriteBehindQueueDepth());
+	}
+
+	@Test
+	public void testDeleteDropsThePendingWrite() {
+		store = store(writeBehind());
+
+		store.insert(person("a", "ann", 30));
+		store.delete(TABLE.withKey("a")).join();
+		store.flush().join();
+
+		assertEquals(0, backend.size(TABLE));
+	}
+
+	@Test
+	public void testWritesAfterADeleteLandAfterIt() {
+		store = store(writeBehind());
+		store.insert(person("a", "ann", 30));
+		store.flush().join();
+
+		store.delete(TABLE.withKey("a")).join();
+		store.insert(person("a", "anne", 31));
+		store.flush().join();
+
+		Person stored = store.getFromDatabaseBypassingCache(TABLE.withKey("a")).join();
+		assertEquals("anne", stored.getName());
+	}
+
+	@Test
+	public void testCloseFlushesWriteBehind() {
+		store = store(writeBehind());
+
+		store.insert(person("a", "ann", 30));
+		store.close();
+		store = null;
+
+		assertEquals(1, backend.size(TABLE));
+	}
+
+	private Store<Person> store(StoreSettings settings) {
+		ObjectFactory factory = new ObjectFactory();
+		factory.bind(Gson.class).toLazy(ignore -> new Gson());
+		factory.bind(StorageBackend.class).toFunction(ignore -> backend);
+		factory.bind(Store.class).toFunction(ignore -> Instances.instance(Store.class, Person.class, TABLE, settings));
+
+		@SuppressWarnings("unchecked")
+		Store<Person> requested = factory.request(Store.class);
+		return requested;
+	}
+
+	private static StoreSettings writeBehind() {
+		return StoreSettings.builder()
+				.writeBehind(1, TimeUnit.HOURS) // only explicit flushes drain
+				.writeBehindMaximumEntries(100)
+				.build();
+	}
+
+	private static Person person(String key, String name, int age) {
+		Person person = new Person();
+		person.setLocation(TABLE.withKey(key));
+		person.setName(name);
+		person.setAge(age);
+		return person;
+	}
+
+	public static final class Person extends Document {
+		private String name;
+		private int age;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+	}
+
+}
@@ -0,0 +1,332 @@
+package com.ulfric.dragoon.rethink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ulfric.dragoon.rethink.response.Response;
+
+public class WriteBehindBufferTest {
+
+	private final List<List<Document>> written = new CopyOnWriteArrayList<>();
+	private WriteBehindBuffer<Document> buffer;
+
+	@After
+	public void teardown() {
+		if (buffer != null) {
+			buffer.close();
+		}
+	}
+
+	@Test
+	public void testSubmitCoalescesToTheLastWrite() throws Exception {
+		buffer = buffer(TimeUnit.HOURS.toMillis(1), 100);
+		Document first = document("a");
+		Document second = document("a");
+
+		CompletableFuture<Response> future = buffer.submit(first.getLocation(), first);
+		assertSame(future, buffer.submit(second.getLocation(), second));
+		assertEquals(1, buffer.getQueueDepth());
+
+		buffer.flush().get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, written.size());
+		assertSameDocuments(written.get(0), second);
+		assertEquals(Integer.valueOf(1), future.get(5, TimeUnit.SECONDS).getReplaced());
+		assertEquals(0, buffer.getQueueDepth());
+	}
+
+	@Test
+	public void testFullBufferFlushes() throws Exception {
+		buffer = buffer(TimeUnit.HOURS.toMillis(1), 2);
+		Document first = document("a");
+		Document second = document("b");
+
+		buffer.submit(first.getLocation(), first);
+		buffer.submit(second.getLocation(), second).get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, written.size());
+		assertSameDocuments(written.get(0), first, second);
+	}
+
+	@Test
+	public void testWindowFlushes() throws Exception {
+		buffer = buffer(20, 100);
+		Document document = document("a");
+
+		buffer.submit(document.getLocation(), document).get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, written.size());
+	}
+
+	@Test
+	public void testDiscardDropsThePendingWrite() throws Exception {
+		buffer = buffer(TimeUnit.HOURS.toMillis(1), 100);
+		Document document = document("a");
+
+		CompletableFuture<Response> future = buffer.submit(document.getLocation(), document);
+		buffer.discard(document.getLocation());
+		buffer.flush().get(5, TimeUnit.SECONDS);
+
+		assertEquals(Integer.valueOf(1), future.get(5, TimeUnit.SECONDS).getUnchanged());
+		assertTrue(written.isEmpty());
+	}
+
+	@Test
+	public void testCloseFlushesAndStopsBuffering() throws Exception {
+		buffer = buffer(TimeUnit.HOURS.toMillis(1), 100);
+		Document document = document("a");
+
+		CompletableFuture<Response> future = buffer.submit(document.getLocation(), document);
+		buffer.close();
+
+		assertTrue(future.isDone());
+		assertEquals(1, written.size());
+		assertNull(buffer.submit(document.getLocation(), document)); // callers write through instead
+	}
+
+	@Test
+	public void testFailedWritesAreRetried() throws Exception {
+		AtomicBoolean failing = new AtomicBoolean(true);
+		buffer = new WriteBehindBuffer<>("test", TimeUnit.HOURS.toMillis(1), 100, values -> {
+			if (failing.get()) {
+				throw new IllegalStateException("down");
+			}
+			written.add(new ArrayList<>(values));
+			return CompletableFuture.completedFuture(new Response());
+		}, null);
+		Document document = document("a");
+
+		CompletableFuture<Response> future = buffer.submit(document.getLocation(), document);
+		buffer.flush().get(5, TimeUnit.SECONDS);
+
+		assertFalse(future.isDone());
+		assertEquals(1, buffer.getQueueDepth()); // put back for the next flush
+
+		failing.set(false);
+		buffer.flush().get(5, TimeUnit.SECONDS);
+
+		future.get(5, TimeUnit.SECONDS);
+		assertEquals(1, written.size());
+		assertSameDocuments(written.get(0), document);
+	}
+
+	@Test
+	public void testFailedWritesDoNotOverwriteNewerSubmits() throws Exception {
+		CountDownLatch draining = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean failing = new AtomicBoolean(true);
+		buffer = new WriteBehindBuffer<>("test", TimeUnit.HOURS.toMillis(1), 100, values -> {
+			if (failing.getAndSet(false)) {
+				draining.countDown();
+				await(release);
+				throw new IllegalStateException("down");
+			}
+			written.add(new ArrayList<>(values));
+			return CompletableFuture.completedFuture(new Response());
+		}, null);
+		Document older = document("a");
+		Document newer = document("a");
+
+		CompletableFuture<Response> first = buffer.submit(older.getLocation(), older);
+		buffer.flush();
+		assertTrue(draining.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Response> second = buffer.submit(newer.getLocation(), newer);
+		release.countDown();
+
+		buffer.flush().get(5, TimeUnit.SECONDS);
+
+		first.get(5, TimeUnit.SECONDS);
+		second.get(5, TimeUnit.SECONDS);
+		assertEquals(1, written.size());
+		assertSameDocuments(written.get(0), newer);
+	}
+
+	@Test
+	public void testCloseFailsWritesThatCannotLand() throws Exception {
+		buffer = new WriteBehindBuffer<>("test", TimeUnit.HOURS.toMillis(1), 100, values -> {
+			throw new IllegalStateException("down");
+		}, null);
+		Document document = document("a");
+
+		CompletableFuture<Response> future = buffer.submit(document.getLocation(), document);
+		buffer.close();
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected the write to fail");
+		} catch (ExecutionException expected) {
+			assertTrue(future.isCompletedExceptionally());
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void testFullBufferBlocksUntilADrainMakesRoom() throws Exception {
+		CountDownLatch draining = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		buffer = new WriteBehindBuffer<>("test", TimeUnit.HOURS.toMillis(1), 1, values -> {
+			draining.countDown();
+			await(release);
+			written.add(new ArrayList<>(values));
+			return CompletableFuture.completedFuture(new Response());
+		}, null);
+		Document first = document("a");
+		Document second = document("b");
+		Document third = document("c");
+
+		buffer.submit(first.getLocation(), first);
+		assertTrue(draining.await(5, TimeUnit.SECONDS));
+		buffer.submit(second.getLocation(), second); // the drain took the first, so there is room for one
+
+		AtomicBoolean submitted = new AtomicBoolean();
+		Thread blocked = new Thread(() -> {
+			buffer.submit(third.getLocation(), third);
+			submitted.set(true);
+		});
+		blocked.start();
+		blocked.join(200);
+
+		assertFalse(submitted.get());
+		assertEquals(1, buffer.getQueueDepth());
+
+		release.countDown();
+		blocked.join();
+
+		assertTrue(submitted.get());
+	}
+
+	@Test
+	public void testDiscardHoldsBackLaterWritesUntilTheActionRan() throws Exception {
+		CountDownLatch acting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = new CopyOnWriteArrayList<>();
+		buffer = new WriteBehindBuffer<>("test", TimeUnit.HOURS.toMillis(1), 100, values -> {
+			order.add("write");
+			return CompletableFuture.completedFuture(new Response());
+		}, null);
+		Document stale = document("a");
+		Document fresh = document("a");
+
+		CompletableFuture<Response> superseded = buffer.submit(stale.getLocation(), stale);
+		CompletableFuture<String> deleted = buffer.discard(Collections.singletonList(stale.getLocation()), () -> {
+			acting.countDown();
+			await(release);
+			order.add("delete");
+			return "deleted";
+		});
+
+		assertEquals(Integer.valueOf(1), superseded.get(5, TimeUnit.SECONDS).getUnchanged()); // dropped when discard was called
+		assertTrue(acting.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<Response> future = buffer.submit(fresh.getLocation(), fresh);
+		CompletableFuture<Void> flushed = buffer.flush(); // queued behind the delete
+		release.countDown();
+
+		assertEquals("deleted", deleted.get(5, TimeUnit.SECONDS));
+		flushed.get(5, TimeUnit.SECONDS);
+		buffer.flush().get(5, TimeUnit.SECONDS);
+		future.get(5, TimeUnit.SECONDS);
+
+		assertEquals(Arrays.asList("delete", "write"), order);
+	}
+
+	@Test
+	public void testFlushThenRunsAfterPendingWrites() throws Exception {
+		buffer = buffer(TimeUnit.HOURS.toMillis(1), 100);
+		Document document = document("a");
+
+		buffer.submit(document.getLocation(), document);
+
+		assertEquals(Integer.valueOf(1), buffer.flushThen(written::size).get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testUnlessPendingSkipsPendingLocations() {
+		buffer = buffer(TimeUnit.HOURS.toMillis(1), 100);
+		Document document = document("a");
+		AtomicBoolean ran = new AtomicBoolean();
+
+		buffer.submit(document.getLocation(), document);
+
+		assertFalse(buffer.unlessPending(document.getLocation(), () -> ran.set(true)));
+		assertFalse(ran.get());
+		assertTrue(buffer.unlessPending(Location.key("b"), () -> ran.set(true)));
+		assertTrue(ran.get());
+	}
+
+	@Test
+	public void testSerializeWaitsForAnInFlightDrain() throws Exception {
+		CountDownLatch draining = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		buffer = new WriteBehindBuffer<>("test", TimeUnit.HOURS.toMillis(1), 100, values -> {
+			draining.countDown();
+			await(release);
+			written.add(new ArrayList<>(values));
+			return CompletableFuture.completedFuture(new Response());
+		}, null);
+		Document document = document("a");
+
+		buffer.submit(document.getLocation(), document);
+		buffer.flush();
+		assertTrue(draining.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<Integer> serialized = buffer.serialize(written::size);
+		try {
+			serialized.get(100, TimeUnit.MILLISECONDS);
+			fail("ran alongside the drain");
+		} catch (TimeoutException expected) {
+			release.countDown();
+		}
+
+		assertEquals(Integer.valueOf(1), serialized.get(5, TimeUnit.SECONDS));
+	}
+
+	private WriteBehindBuffer<Document> buffer(long window, int maximumEntries) {
+		return new WriteBehindBuffer<>("test", window, maximumEntries, values -> {
+			written.add(new ArrayList<>(values));
+			Response response = new Response();
+			response.setReplaced(values.size());
+			return CompletableFuture.completedFuture(response);
+		}, null);
+	}
+
+	private static Document document(String key) {
+		Document document = new Document();
+		document.setLocation(Location.key(key));
+		return document;
+	}
+
+	private static void assertSameDocuments(List<Document> actual, Document... expected) {
+		assertEquals(expected.length, actual.size());
+		for (int index = 0; index < expected.length; index++) {
+			assertSame(expected[index], actual.get(index));
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
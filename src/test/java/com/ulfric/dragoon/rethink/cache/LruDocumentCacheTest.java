@@ -0,0 +1,158 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ulfric.dragoon.rethink.Location;
+
+public class LruDocumentCacheTest {
+
+	private final List<Location> evicted = new ArrayList<>();
+	private final Map<String, Integer> weights = new HashMap<>();
+
+	@Test
+	public void testComputeIfAbsentLoadsOnce() {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU).maximumSize(10));
+
+		assertEquals("a", cache.computeIfAbsent(key("a"), Location::getKey));
+		assertEquals("a", cache.computeIfAbsent(key("a"), location -> "reloaded"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU).maximumSize(2));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.computeIfAbsent(key("b"), Location::getKey);
+		cache.get(key("a"));
+		cache.computeIfAbsent(key("c"), Location::getKey);
+
+		assertEquals("a", cache.get(key("a")));
+		assertNull(cache.get(key("b")));
+		assertEquals("c", cache.get(key("c")));
+		assertEquals(Arrays.asList(key("b")), evicted);
+	}
+
+	@Test
+	public void testUnreadEntriesGoFirstWhateverTheirAge() {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU).maximumSize(3));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.computeIfAbsent(key("b"), Location::getKey);
+		cache.computeIfAbsent(key("c"), Location::getKey);
+		cache.get(key("a"));
+		cache.get(key("c"));
+		cache.computeIfAbsent(key("d"), Location::getKey);
+		cache.computeIfAbsent(key("e"), Location::getKey);
+
+		assertEquals(Arrays.asList(key("b"), key("d")), evicted);
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testReweighEvictsOverweightEntries() {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU).maximumWeight(10));
+		weights.put("a", 4);
+		weights.put("b", 4);
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.computeIfAbsent(key("b"), Location::getKey);
+		assertTrue(evicted.isEmpty());
+
+		weights.put("b", 8);
+		cache.reweigh(key("b"));
+
+		assertNull(cache.get(key("a")));
+		assertEquals("b", cache.get(key("b")));
+		assertEquals(Arrays.asList(key("a")), evicted);
+	}
+
+	@Test
+	public void testRemoveDoesNotNotify() {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU).maximumSize(10));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+
+		assertEquals("a", cache.remove(key("a")));
+		assertNull(cache.get(key("a")));
+		assertTrue(evicted.isEmpty());
+	}
+
+	@Test
+	public void testExpireAfterAccessSweepsUntouchedEntries() throws Exception {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU)
+				.expireAfterAccess(50, TimeUnit.MILLISECONDS));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.computeIfAbsent(key("b"), Location::getKey);
+		Thread.sleep(120);
+		cache.computeIfAbsent(key("c"), Location::getKey);
+
+		assertEquals(1, cache.size());
+		assertEquals(Arrays.asList(key("a"), key("b")), evicted);
+	}
+
+	@Test
+	public void testExpireAfterWriteIgnoresAccess() throws Exception {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU)
+				.expireAfterWrite(150, TimeUnit.MILLISECONDS));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.computeIfAbsent(key("b"), Location::getKey);
+		Thread.sleep(80);
+		cache.get(key("a")); // moves a behind b in access order, but not in write order
+		Thread.sleep(100);
+
+		assertNull(cache.get(key("c")));
+		assertEquals(0, cache.size());
+		assertEquals(Arrays.asList(key("a"), key("b")), evicted);
+	}
+
+	@Test
+	public void testReweighRestartsExpireAfterWrite() throws Exception {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU)
+				.expireAfterWrite(150, TimeUnit.MILLISECONDS));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.computeIfAbsent(key("b"), Location::getKey);
+		Thread.sleep(80);
+		cache.reweigh(key("a"));
+		Thread.sleep(100);
+
+		assertEquals("a", cache.get(key("a")));
+		assertNull(cache.get(key("b")));
+		assertEquals(Arrays.asList(key("b")), evicted);
+	}
+
+	@Test
+	public void testClear() {
+		LruDocumentCache<String> cache = cache(CacheSettings.builder().policy(CachePolicy.LRU).maximumSize(10));
+
+		cache.computeIfAbsent(key("a"), Location::getKey);
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertTrue(evicted.isEmpty());
+	}
+
+	private LruDocumentCache<String> cache(CacheSettings.Builder settings) {
+		return new LruDocumentCache<>(settings.build(), value -> weights.getOrDefault(value, 1),
+				(location, value) -> evicted.add(location));
+	}
+
+	private static Location key(String key) {
+		return Location.key(key);
+	}
+
+}
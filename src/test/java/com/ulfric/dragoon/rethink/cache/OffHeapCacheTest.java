@@ -0,0 +1,215 @@
+package com.ulfric.dragoon.rethink.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ulfric.dragoon.rethink.Location;
+
+public class OffHeapCacheTest {
+
+	private static final int SEGMENT = 4096;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<Location> evicted = new CopyOnWriteArrayList<>();
+	private OffHeapCache cache;
+
+	@Before
+	public void setup() {
+		cache = OffHeapCache.builder()
+				.name("test")
+				.directory(folder.getRoot().toPath())
+				.maximumSize(SEGMENT * 2)
+				.segmentSize(SEGMENT)
+				.evictionListener(evicted::add)
+				.build();
+	}
+
+	@After
+	public void teardown() {
+		cache.close();
+	}
+
+	@Test
+	public void testGetReturnsWhatWasPut() {
+		cache.put(key(1), value(1, 100));
+
+		assertArrayEquals(value(1, 100), cache.get(key(1)));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testGetMissesUnknownLocations() {
+		assertNull(cache.get(key(1)));
+	}
+
+	@Test
+	public void testPutOverwritesPreviousRecord() {
+		cache.put(key(1), value(1, 100));
+		cache.put(key(1), value(2, 50));
+
+		assertArrayEquals(value(2, 50), cache.get(key(1)));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testTakeRemoves() {
+		cache.put(key(1), value(1, 100));
+
+		assertArrayEquals(value(1, 100), cache.take(key(1)));
+		assertNull(cache.take(key(1)));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRemove() {
+		cache.put(key(1), value(1, 100));
+
+		assertTrue(cache.remove(key(1)));
+		assertFalse(cache.remove(key(1)));
+		assertNull(cache.get(key(1)));
+	}
+
+	@Test
+	public void testRecordsLargerThanASegmentAreRefused() {
+		assertFalse(cache.put(key(1), new byte[SEGMENT]));
+		assertNull(cache.get(key(1)));
+	}
+
+	@Test
+	public void testRecyclingEvictsTheOldestSegment() {
+		int perSegment = SEGMENT / (Integer.BYTES + 100);
+
+		for (int index = 0; index <= perSegment * 2; index++) { // one past two full segments rolls back onto the first
+			assertTrue(cache.put(key(index), value(index, 100)));
+		}
+
+		assertEquals(perSegment, cache.getEvictionCount());
+		assertEquals(perSegment, evicted.size());
+		for (int index = 0; index < perSegment; index++) {
+			assertNull(cache.get(key(index)));
+			assertTrue(evicted.contains(key(index)));
+		}
+		for (int index = perSegment; index <= perSegment * 2; index++) {
+			assertArrayEquals(value(index, 100), cache.get(key(index)));
+		}
+	}
+
+	@Test
+	public void testRecyclingSkipsRecordsRewrittenElsewhere() {
+		int perSegment = SEGMENT / (Integer.BYTES + 100);
+
+		for (int index = 0; index < perSegment; index++) {
+			cache.put(key(index), value(index, 100));
+		}
+		cache.put(key(0), value(0, 100)); // opens the second segment, the first now holds a dead copy
+		for (int index = perSegment; index < perSegment * 2; index++) {
+			cache.put(key(index), value(index, 100)); // the last one recycles the first segment
+		}
+
+		assertArrayEquals(value(0, 100), cache.get(key(0)));
+		assertFalse(evicted.contains(key(0)));
+		assertTrue(evicted.contains(key(1)));
+	}
+
+	@Test
+	public void testMappedBytesGrowBySegment() {
+		assertEquals(0, cache.getMappedBytes());
+
+		cache.put(key(1), value(1, 100));
+
+		assertEquals(SEGMENT, cache.getMappedBytes());
+	}
+
+	@Test
+	public void testCloseDropsEverythingAndDeletesFiles() throws Exception {
+		cache.put(key(1), value(1, 100));
+		cache.put(key(2), value(2, 100));
+
+		cache.close();
+
+		assertEquals(0, cache.size());
+		assertTrue(evicted.containsAll(Arrays.asList(key(1), key(2))));
+		assertFalse(cache.put(key(3), value(3, 100)));
+		try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test(timeout = 30_000)
+	public void testReadsNeverSeeTornRecords() throws Exception {
+		int keys = 64;
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicReference<String> torn = new AtomicReference<>();
+		CountDownLatch started = new CountDownLatch(1);
+
+		List<Thread> readers = new ArrayList<>();
+		for (int reader = 0; reader < 4; reader++) {
+			Thread thread = new Thread(() -> {
+				started.countDown();
+				int index = 0;
+				while (writing.get() && torn.get() == null) {
+					int id = index++ % keys;
+					byte[] read = cache.get(key(id));
+					if (read != null && !Arrays.equals(value(id, length(id)), read)) {
+						torn.compareAndSet(null, "key " + id + " read " + new String(read, StandardCharsets.UTF_8));
+					}
+				}
+			});
+			thread.start();
+			readers.add(thread);
+		}
+
+		started.await();
+		for (int write = 0; write < 50_000 && torn.get() == null; write++) { // two segments recycle every few hundred writes
+			int id = write % keys;
+			cache.put(key(id), value(id, length(id)));
+		}
+		writing.set(false);
+
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertNull(torn.get());
+	}
+
+	private static int length(int id) {
+		return 20 + id * 3; // varying lengths move record boundaries on every pass
+	}
+
+	private static Location key(int id) {
+		return Location.key("key-" + id);
+	}
+
+	private static byte[] value(int id, int length) {
+		byte[] value = new byte[length];
+		byte[] pattern = ("[" + id + "]").getBytes(StandardCharsets.UTF_8);
+		for (int index = 0; index < length; index++) {
+			value[index] = pattern[index % pattern.length];
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.ulfric.dragoon.rethink.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+public class JsonMergePatchTest {
+
+	private static final Gson GSON = new Gson();
+
+	@Test
+	public void testDiffOfEqualDocumentsIsEmpty() {
+		JsonElement patch = JsonMergePatch.diff(json("{'a':1,'b':{'c':2}}"), json("{'a':1,'b':{'c':2}}"));
+
+		assertTrue(JsonMergePatch.isEmpty(patch));
+	}
+
+	@Test
+	public void testDiffCarriesOnlyChangedFields() {
+		JsonElement patch = JsonMergePatch.diff(json("{'a':1,'b':2}"), json("{'a':1,'b':3}"));
+
+		assertEquals(json("{'b':3}"), patch);
+		assertFalse(JsonMergePatch.isEmpty(patch));
+	}
+
+	@Test
+	public void testDiffNullsRemovedFields() {
+		JsonElement patch = JsonMergePatch.diff(json("{'a':1,'b':2}"), json("{'a':1}"));
+
+		assertEquals(json("{'b':null}"), patch);
+	}
+
+	@Test
+	public void testDiffRecursesIntoObjects() {
+		JsonElement patch = JsonMergePatch.diff(json("{'a':{'b':1,'c':2}}"), json("{'a':{'b':1,'c':3}}"));
+
+		assertEquals(json("{'a':{'c':3}}"), patch);
+	}
+
+	@Test
+	public void testDiffReplacesArraysWhole() {
+		JsonElement patch = JsonMergePatch.diff(json("{'a':[1,2,3]}"), json("{'a':[1,2]}"));
+
+		assertEquals(json("{'a':[1,2]}"), patch);
+	}
+
+	@Test
+	public void testDiffToNonObjectIsTheTarget() {
+		assertEquals(json("[1]"), JsonMergePatch.diff(json("{'a':1}"), json("[1]")));
+		assertEquals(JsonNull.INSTANCE, JsonMergePatch.diff(json("{'a':1}"), null));
+	}
+
+	@Test
+	public void testApplyRemovesNulledFields() {
+		JsonElement patched = JsonMergePatch.apply(json("{'a':1,'b':2}"), json("{'b':null}"));
+
+		assertEquals(json("{'a':1}"), patched);
+	}
+
+	@Test
+	public void testApplyMergesNestedObjects() {
+		JsonElement patched = JsonMergePatch.apply(json("{'a':{'b':1,'c':2}}"), json("{'a':{'c':3,'d':4}}"));
+
+		assertEquals(json("{'a':{'b':1,'c':3,'d':4}}"), patched);
+	}
+
+	@Test
+	public void testApplyCreatesMissingObjects() {
+		JsonElement patched = JsonMergePatch.apply(json("{}"), json("{'a':{'b':null,'c':1}}"));
+
+		assertEquals(json("{'a':{'c':1}}"), patched);
+	}
+
+	@Test
+	public void testApplyDoesNotMutateTheTarget() {
+		JsonElement target = json("{'a':1}");
+
+		JsonMergePatch.apply(target, json("{'a':2}"));
+
+		assertEquals(json("{'a':1}"), target);
+	}
+
+	@Test
+	public void testApplyOfDiffRoundTrips() {
+		JsonElement source = json("{'a':1,'b':{'c':[1,2],'d':'x'},'e':true}");
+		JsonElement target = json("{'a':2,'b':{'c':[3],'f':0},'g':'y'}");
+
+		assertEquals(target, JsonMergePatch.apply(source, JsonMergePatch.diff(source, target)));
+	}
+
+	@Test
+	public void testHashIgnoresFieldOrderAndNumberRepresentation() {
+		JsonObject built = new JsonObject();
+		built.addProperty("b", 2);
+		built.addProperty("a", "x");
+
+		assertEquals(JsonMergePatch.hash(json("{'a':'x','b':2}")), JsonMergePatch.hash(built));
+		assertEquals(JsonMergePatch.hash(json("{'a':{'c':[1,2]}}")), JsonMergePatch.hash(JsonMergePatch.apply(json("{}"), json("{'a':{'c':[1,2]}}"))));
+	}
+
+	@Test
+	public void testHashSeesChanges() {
+		assertNotEquals(JsonMergePatch.hash(json("{'a':1}")), JsonMergePatch.hash(json("{'a':2}")));
+		assertNotEquals(JsonMergePatch.hash(json("{'a':[1,2]}")), JsonMergePatch.hash(json("{'a':[2,1]}")));
+		assertNotEquals(JsonMergePatch.hash(json("{'a':1}")), JsonMergePatch.hash(json("{'b':1}")));
+	}
+
+	private static JsonElement json(String json) {
+		return GSON.fromJson(json.replace('\'', '"'), JsonElement.class);
+	}
+
+}